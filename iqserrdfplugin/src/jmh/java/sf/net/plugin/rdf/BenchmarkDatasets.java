@@ -0,0 +1,122 @@
+package sf.net.plugin.rdf;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import com.iqser.core.model.Content;
+
+/**
+ * Synthetic N-Triples datasets for the benchmarks. Each subject has
+ * {@link #TRIPLES_PER_SUBJECT} triples and the file is sorted by subject, so it can be
+ * streamed as well. Files are kept in the temp directory and reused by later runs.
+ */
+public final class BenchmarkDatasets {
+
+	public static final int TRIPLES_PER_SUBJECT = 10;
+
+	private static final String NS = "http://example.org/resource/";
+	private static final String VOCAB = "http://example.org/vocab#";
+	private static final String XSD = "http://www.w3.org/2001/XMLSchema#";
+
+	private BenchmarkDatasets() {
+	}
+
+	/**
+	 * @param triples the approximate number of triples
+	 * @return the N-Triples file of the dataset
+	 */
+	public static File get(int triples) throws IOException {
+		File file = new File(System.getProperty("java.io.tmpdir"), "rdf-benchmark-" + triples + ".nt");
+
+		if (!file.exists()) {
+			File tmp = new File(file.getPath() + ".tmp");
+			write(tmp, subjects(triples));
+
+			if (!tmp.renameTo(file)) {
+				throw new IOException("Unable to rename " + tmp);
+			}
+		}
+
+		return file;
+	}
+
+	/**
+	 * @param triples the approximate number of triples
+	 * @return the number of subjects of the dataset
+	 */
+	public static int subjects(int triples) {
+		return Math.max(1, triples / TRIPLES_PER_SUBJECT);
+	}
+
+	/**
+	 * @return the URI of the subject with the given index
+	 */
+	public static String uri(int subject) {
+		return NS + subject;
+	}
+
+	/**
+	 * @param file the dataset file
+	 * @return the init params loading the dataset into memory
+	 */
+	public static Properties initParams(File file) {
+		Properties initParams = new Properties();
+		initParams.setProperty("modelURL", file.toURI().toString());
+		initParams.setProperty("content-type", "RDF Resource");
+		return initParams;
+	}
+
+	/**
+	 * Creates the contents the GIN core would know after synchronizing some of the subjects of a
+	 * dataset plus some contents that no longer exist in the dataset.
+	 *
+	 * @param subjects the number of subjects of the dataset
+	 * @param removed the number of additional contents missing in the dataset
+	 * @return the contents
+	 */
+	public static List<Content> existingContents(int subjects, int removed) {
+		List<Content> contents = new ArrayList<Content>(subjects + removed);
+
+		for (int i = 0; i < subjects + removed; i++) {
+			Content c = new Content();
+			c.setContentUrl(uri(i));
+			c.setProvider("benchmark");
+			c.setModificationDate(Long.MAX_VALUE);
+			contents.add(c);
+		}
+
+		return contents;
+	}
+
+	private static void write(File file, int subjects) throws IOException {
+		Random random = new Random(42);
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 1 << 16);
+
+		try {
+			for (int i = 0; i < subjects; i++) {
+				String s = "<" + uri(i) + "> ";
+
+				out.write(s + "<http://www.w3.org/1999/02/22-rdf-syntax-ns#type> <" + VOCAB + "Thing" + (i % 20) + "> .\n");
+				out.write(s + "<" + VOCAB + "name> \"Resource " + i + "\" .\n");
+				out.write(s + "<" + VOCAB + "label> \"Ressource " + i + "\"@de .\n");
+				out.write(s + "<" + VOCAB + "description> \"Synthetic resource number " + i + " of " + subjects + "\" .\n");
+				out.write(s + "<" + VOCAB + "rank> \"" + random.nextInt(1000) + "\"^^<" + XSD + "int> .\n");
+				out.write(s + "<" + VOCAB + "score> \"" + random.nextDouble() + "\"^^<" + XSD + "double> .\n");
+				out.write(s + "<" + VOCAB + "active> \"" + random.nextBoolean() + "\"^^<" + XSD + "boolean> .\n");
+				out.write(s + "<" + VOCAB + "created> \"20" + (10 + random.nextInt(10)) + "-0" + (1 + random.nextInt(9)) + "-1" + random.nextInt(10) + "\"^^<" + XSD + "date> .\n");
+				out.write(s + "<" + VOCAB + "related> <" + uri(random.nextInt(subjects)) + "> .\n");
+				out.write(s + "<" + VOCAB + "seeAlso> <" + uri(random.nextInt(subjects)) + "> .\n");
+			}
+		} finally {
+			out.close();
+		}
+	}
+}
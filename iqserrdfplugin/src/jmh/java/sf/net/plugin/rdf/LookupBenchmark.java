@@ -0,0 +1,80 @@
+package sf.net.plugin.rdf;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.iqser.core.model.Content;
+
+/**
+ * Measures the lookup of single contents in a loaded model.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class LookupBenchmark {
+
+	@Param({ "10000", "1000000", "10000000" })
+	public int triples;
+
+	@Param({ "RDF/XML", "N-TRIPLES" })
+	public String binaryFormat;
+
+	@Param({ "memory", "compact" })
+	public String storage;
+
+	private StubbedRDFContentProvider provider;
+	private int subjects;
+	private int next = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		Properties initParams = BenchmarkDatasets.initParams(BenchmarkDatasets.get(triples));
+		initParams.setProperty("binaryFormat", binaryFormat);
+		initParams.setProperty("storage", storage);
+
+		provider = new StubbedRDFContentProvider(initParams);
+		provider.init();
+		subjects = BenchmarkDatasets.subjects(triples);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		provider.destroy();
+	}
+
+	@Benchmark
+	public Content getContent() {
+		return provider.getContent(nextUri());
+	}
+
+	@Benchmark
+	public byte[] getBinaryData() {
+		Content c = new Content();
+		c.setContentUrl(nextUri());
+		return provider.getBinaryData(c);
+	}
+
+	private String nextUri() {
+		// Strided walk over all subjects, so lookups do not hit the same cache lines
+		next = (next + 7919) % subjects;
+		return BenchmarkDatasets.uri(next);
+	}
+}
@@ -0,0 +1,91 @@
+package sf.net.plugin.rdf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import com.iqser.core.model.Content;
+
+/**
+ * RDF content provider with the callbacks to the GIN core replaced by an in memory map of
+ * contents, so benchmarks measure the provider only.
+ */
+public class StubbedRDFContentProvider extends RDFContentProvider {
+
+	private final Map<String, Content> contents = new LinkedHashMap<String, Content>();
+
+	private int added = 0;
+	private int updated = 0;
+	private int removed = 0;
+
+	/**
+	 * @param initParams the init params of the provider
+	 */
+	public StubbedRDFContentProvider(Properties initParams) {
+		setId(1);
+		setName("benchmark");
+		setInitParams(initParams);
+	}
+
+	/**
+	 * Replaces the contents known to the stubbed core.
+	 */
+	public void setExistingContents(Collection<Content> existing) {
+		contents.clear();
+
+		for (Content c : existing) {
+			contents.put(c.getContentUrl(), c);
+		}
+
+		added = 0;
+		updated = 0;
+		removed = 0;
+	}
+
+	@Override
+	public void addContent(Content content) {
+		contents.put(content.getContentUrl(), content);
+		added++;
+	}
+
+	@Override
+	public void updateContent(Content content) {
+		contents.put(content.getContentUrl(), content);
+		updated++;
+	}
+
+	@Override
+	public void removeContent(String contentUrl) {
+		contents.remove(contentUrl);
+		removed++;
+	}
+
+	@Override
+	public boolean isExistingContent(String contentUrl) {
+		return contents.containsKey(contentUrl);
+	}
+
+	@Override
+	public Content getExistingContent(String contentUrl) {
+		return contents.get(contentUrl);
+	}
+
+	@Override
+	public Collection<Content> getExistingContents() {
+		return new ArrayList<Content>(contents.values());
+	}
+
+	public int getAdded() {
+		return added;
+	}
+
+	public int getUpdated() {
+		return updated;
+	}
+
+	public int getRemoved() {
+		return removed;
+	}
+}
@@ -0,0 +1,72 @@
+package sf.net.plugin.rdf;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.iqser.core.model.Content;
+
+/**
+ * Measures doSynchronization() and doHousekeeping() of a loaded model against the stubbed core.
+ * Synchronization starts from an empty core, so every subject is added. Housekeeping starts from
+ * a core knowing all subjects plus ten percent removed ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class SyncBenchmark {
+
+	@Param({ "10000", "1000000", "10000000" })
+	public int triples;
+
+	private StubbedRDFContentProvider provider;
+	private List<Content> existing;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		provider = new StubbedRDFContentProvider(BenchmarkDatasets.initParams(BenchmarkDatasets.get(triples)));
+		provider.init();
+
+		int subjects = BenchmarkDatasets.subjects(triples);
+		existing = BenchmarkDatasets.existingContents(subjects, subjects / 10);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		provider.destroy();
+	}
+
+	@Benchmark
+	public int doSynchronization() {
+		provider.setExistingContents(Collections.<Content> emptyList());
+		provider.doSynchronization();
+
+		return provider.getAdded();
+	}
+
+	@Benchmark
+	public int doHousekeeping() {
+		provider.setExistingContents(existing);
+		provider.doHousekeeping();
+
+		return provider.getRemoved();
+	}
+}
@@ -0,0 +1,269 @@
+package sf.net.plugin.rdf;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.log4j.Logger;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.shared.Lock;
+
+/**
+ * Loads a RDF source or the result of a SPARQL graph query into a model on a thread of its own.
+ * Each subject is added to the model as soon as all of its consecutive triples have been read and
+ * is then queued for the synchronization, so the first synchronization runs alongside the parser.
+ * <p>
+ * The queue is bounded: if the synchronization falls behind, or has not started yet, the parser
+ * waits for it.
+ */
+class AsyncModelLoader {
+
+	private static Logger LOGGER = Logger.getLogger(AsyncModelLoader.class);
+
+	// Marks the end of the source, a failure is reported after it
+	private static final Node END = Node.createAnon();
+
+	// How long closing waits for the loading thread
+	private static final long CLOSE_TIMEOUT_MILLIS = 10000;
+
+	private final String url;
+	private final Query query;
+	private final HttpTimeouts timeouts;
+	private final Model model;
+	private final ProviderMetrics metrics;
+	private final BlockingQueue<Node> queue;
+	private final Thread loader;
+	private final StreamHandle stream = new StreamHandle();
+
+	// Hashed URIs of the subjects in the model, until the whole source is loaded
+	private LongHashSet subjects = new LongHashSet();
+
+	private boolean loaded = false;
+	private RuntimeException failure = null;
+	private volatile boolean closed = false;
+
+	// Read by the synchronization only
+	private boolean drained = false;
+
+	/**
+	 * @param url the URL of the RDF source or SPARQL service
+	 * @param query the CONSTRUCT or DESCRIBE query or null, if the source is read directly
+	 * @param timeouts the timeouts of the query
+	 * @param model the model to load the source into
+	 * @param queueSize the maximum number of subjects waiting for the synchronization
+	 * @param metrics the metrics of the provider
+	 * @param name the name of the loading thread
+	 */
+	AsyncModelLoader(String url, Query query, HttpTimeouts timeouts, Model model, int queueSize, ProviderMetrics metrics,
+			String name) {
+		this.url = url;
+		this.query = query;
+		this.timeouts = timeouts;
+		this.model = model;
+		this.metrics = metrics;
+		this.queue = new ArrayBlockingQueue<Node>(Math.max(1, queueSize));
+
+		loader = new Thread(new Runnable() {
+			public void run() {
+				load();
+			}
+		}, name);
+
+		loader.setDaemon(true);
+	}
+
+	/**
+	 * Starts loading the source.
+	 */
+	void start() {
+		loader.start();
+	}
+
+	/**
+	 * Takes the next loaded subject, waiting for the parser if needed. A subject that appears again
+	 * later in the source is returned a second time.
+	 *
+	 * @return the subject or null, if all subjects of the source were taken
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	Node take() throws InterruptedException {
+		if (!drained) {
+			Node subject = queue.take();
+
+			if (subject != END) {
+				return subject;
+			}
+
+			drained = true;
+		}
+
+		checkFailure();
+
+		return null;
+	}
+
+	/**
+	 * @return true, if all subjects of the source were taken
+	 */
+	boolean isDrained() {
+		return drained;
+	}
+
+	/**
+	 * @return true, if the whole source is in the model
+	 */
+	synchronized boolean isLoaded() {
+		return loaded;
+	}
+
+	/**
+	 * @param uri the URI of a subject
+	 * @return true, if all consecutive triples of the subject are in the model
+	 */
+	synchronized boolean isLoaded(String uri) {
+		checkFailure();
+
+		return loaded || subjects.contains(Fingerprints.hash(uri));
+	}
+
+	/**
+	 * Waits until a subject is in the model or, if the source does not contain it, the whole source
+	 * is loaded.
+	 *
+	 * @param uri the URI of the subject
+	 * @param timeoutMillis the maximum time to wait, 0 to wait without a limit
+	 * @return true, if the subject is loaded; false, if the time ran out
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	synchronized boolean await(String uri, long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+
+		while (!isLoaded(uri)) {
+			long remaining = deadline - System.currentTimeMillis();
+
+			if (timeoutMillis > 0 && remaining <= 0) {
+				return false;
+			}
+
+			wait(timeoutMillis > 0 ? remaining : 0);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Stops loading the source. The connection to the source is closed, as interrupting the loading
+	 * thread does not unblock it while it waits for the source.
+	 */
+	void close() {
+		closed = true;
+		loader.interrupt();
+
+		try {
+			stream.close();
+		} catch (IOException e) {
+			LOGGER.debug("Unable to close " + url + " - " + e.getLocalizedMessage());
+		}
+
+		try {
+			loader.join(CLOSE_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (loader.isAlive()) {
+			LOGGER.warn("Loading " + url + " did not stop within " + CLOSE_TIMEOUT_MILLIS + " ms");
+		}
+	}
+
+	private synchronized void checkFailure() {
+		if (failure != null) {
+			throw new IllegalStateException("Unable to load " + url + " - " + failure.getLocalizedMessage(), failure);
+		}
+	}
+
+	private void load() {
+		long start = System.nanoTime();
+		final long[] triples = new long[1];
+
+		try {
+			SubjectGrouper grouper = new SubjectGrouper(new SubjectHandler() {
+				public void handle(Node subject, List<Triple> group) {
+					add(subject, group);
+					triples[0] += group.size();
+				}
+			});
+
+			if (query != null) {
+				SparqlHttp.execute(url, query, grouper, timeouts, stream);
+			} else {
+				SourceStreams.parse(grouper, url, stream);
+			}
+
+			synchronized (this) {
+				loaded = true;
+				subjects = null;
+				notifyAll();
+			}
+
+			metrics.parsed(triples[0], System.nanoTime() - start);
+			LOGGER.info("Loaded " + url + " (" + triples[0] + " triples) in " + (System.nanoTime() - start) / 1000000 + " ms");
+		} catch (RuntimeException e) {
+			fail(e);
+		}
+
+		try {
+			queue.put(END);
+		} catch (InterruptedException e) {
+			// Closed by the provider
+		}
+	}
+
+	private void add(Node subject, List<Triple> group) {
+		if (closed) {
+			throw new IllegalStateException("Closed while loading");
+		}
+
+		model.enterCriticalSection(Lock.WRITE);
+
+		try {
+			Graph graph = model.getGraph();
+
+			for (Triple triple : group) {
+				graph.add(triple);
+			}
+		} finally {
+			model.leaveCriticalSection();
+		}
+
+		synchronized (this) {
+			if (subject.isURI()) {
+				subjects.add(Fingerprints.hash(subject.getURI()));
+			}
+
+			notifyAll();
+		}
+
+		try {
+			queue.put(subject);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while loading", e);
+		}
+	}
+
+	private synchronized void fail(RuntimeException e) {
+		if (!closed) {
+			LOGGER.error("Unable to load " + url + " - " + e.getLocalizedMessage());
+		}
+
+		failure = e;
+		notifyAll();
+	}
+}
@@ -0,0 +1,112 @@
+package sf.net.plugin.rdf;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of the binary data of contents, keyed by content URL and bounded by
+ * the total size of the cached data.
+ */
+class BinaryDataCache {
+
+	private final long maxBytes;
+
+	private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<String, byte[]>(64, 0.75f, true);
+	private long bytes = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	/**
+	 * @param maxBytes the maximum total size of the cached data
+	 */
+	BinaryDataCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * @param url the content URL
+	 * @return a copy of the cached data or null, if the data is not cached
+	 */
+	synchronized byte[] get(String url) {
+		byte[] data = entries.get(url);
+
+		if (data == null) {
+			misses++;
+			return null;
+		}
+
+		hits++;
+		return data.clone();
+	}
+
+	/**
+	 * Caches a copy of the data and evicts the least recently used entries beyond the size bound.
+	 * Data larger than the bound is not cached at all.
+	 */
+	synchronized void put(String url, byte[] data) {
+		if (data.length > maxBytes) {
+			return;
+		}
+
+		byte[] old = entries.put(url, data.clone());
+
+		if (old != null) {
+			bytes -= old.length;
+		}
+
+		bytes += data.length;
+
+		Iterator<Map.Entry<String, byte[]>> iter = entries.entrySet().iterator();
+
+		while (bytes > maxBytes && iter.hasNext()) {
+			bytes -= iter.next().getValue().length;
+			iter.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Drops the cached data of a changed or removed content.
+	 */
+	synchronized void invalidate(String url) {
+		byte[] old = entries.remove(url);
+
+		if (old != null) {
+			bytes -= old.length;
+		}
+	}
+
+	synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	synchronized long getHits() {
+		return hits;
+	}
+
+	synchronized long getMisses() {
+		return misses;
+	}
+
+	synchronized long getEvictions() {
+		return evictions;
+	}
+
+	synchronized int size() {
+		return entries.size();
+	}
+
+	synchronized long getBytes() {
+		return bytes;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return entries.size() + " entries, " + bytes + " bytes, " + hits + " hits, " + misses + " misses, "
+				+ evictions + " evictions";
+	}
+}
@@ -0,0 +1,58 @@
+package sf.net.plugin.rdf;
+
+/**
+ * Bloom filter over 64 bit hashes. The bit positions are derived from the two halves of the hash
+ * by double hashing, so no further hashing of the original value is needed.
+ */
+class BloomFilter {
+
+	private final long[] bits;
+	private final long numBits;
+	private final int numHashes;
+
+	/**
+	 * @param expectedSize the expected number of elements
+	 * @param falsePositiveRate the accepted rate of false positives, e.g. 0.01
+	 */
+	BloomFilter(long expectedSize, double falsePositiveRate) {
+		long n = Math.max(1, expectedSize);
+		long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+
+		numBits = Math.max(64, ((m + 63) / 64) * 64);
+		numHashes = Math.max(1, (int) Math.round((double) numBits / n * Math.log(2)));
+		bits = new long[(int) (numBits / 64)];
+	}
+
+	void add(long hash) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+
+		for (int i = 0; i < numHashes; i++) {
+			long bit = index(h1, h2, i);
+			bits[(int) (bit >>> 6)] |= 1L << bit;
+		}
+	}
+
+	/**
+	 * @return false, if the hash was definitely not added, true if it probably was
+	 */
+	boolean mightContain(long hash) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+
+		for (int i = 0; i < numHashes; i++) {
+			long bit = index(h1, h2, i);
+
+			if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private long index(int h1, int h2, int i) {
+		long combined = h1 + (long) i * h2;
+		return (combined & Long.MAX_VALUE) % numBits;
+	}
+}
@@ -0,0 +1,249 @@
+package sf.net.plugin.rdf;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import org.apache.jena.riot.system.StreamRDFBase;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.TripleMatch;
+import com.hp.hpl.jena.graph.impl.GraphBase;
+import com.hp.hpl.jena.sparql.core.Quad;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.util.iterator.NiceIterator;
+
+/**
+ * Read-only graph for loaded snapshots of a source. Terms are held once in a {@link TermDictionary}
+ * and triples as two int arrays of predicate and object ids, sorted by subject, so a triple costs
+ * 8 bytes. The triples of a subject are found through an offset array indexed by its id.
+ * <p>
+ * Lookups by subject are served from its range. Any other pattern scans all triples, which suits
+ * synchronization and housekeeping, as both walk the whole graph anyway.
+ */
+class CompactGraph extends GraphBase {
+
+	private static final int ANY = -1;
+
+	private final TermDictionary terms;
+
+	// The triples of the subject with id i are at offsets[i] until offsets[i + 1]
+	private final int[] offsets;
+	private final int[] predicates;
+	private final int[] objects;
+
+	private CompactGraph(TermDictionary terms, int[] offsets, int[] predicates, int[] objects) {
+		this.terms = terms;
+		this.offsets = offsets;
+		this.predicates = predicates;
+		this.objects = objects;
+	}
+
+	/**
+	 * Copies a graph. The graphs of a union are copied one by one, the builder drops the triples
+	 * contained in several of them.
+	 *
+	 * @param graph the graph
+	 * @return the compact copy
+	 */
+	static CompactGraph copyOf(Graph graph) {
+		Builder builder = new Builder();
+
+		for (Graph part : GraphPartitions.parts(graph)) {
+			ExtendedIterator<Triple> iter = part.find(Node.ANY, Node.ANY, Node.ANY);
+
+			try {
+				while (iter.hasNext()) {
+					builder.triple(iter.next());
+				}
+			} finally {
+				iter.close();
+			}
+		}
+
+		return builder.build();
+	}
+
+	@Override
+	protected ExtendedIterator<Triple> graphBaseFind(TripleMatch m) {
+		int subject = id(m.getMatchSubject());
+		int predicate = id(m.getMatchPredicate());
+		int object = id(m.getMatchObject());
+
+		if (subject == Integer.MIN_VALUE || predicate == Integer.MIN_VALUE || object == Integer.MIN_VALUE) {
+			return NiceIterator.emptyIterator();
+		}
+
+		return new TripleIterator(subject, predicate, object);
+	}
+
+	@Override
+	protected int graphBaseSize() {
+		return predicates.length;
+	}
+
+	/**
+	 * @return the id of a concrete term, {@link #ANY} for a wildcard or Integer.MIN_VALUE, if the
+	 *         term does not occur in the graph
+	 */
+	private int id(Node node) {
+		if (node == null || !node.isConcrete()) {
+			return ANY;
+		}
+
+		int id = terms.lookup(node);
+
+		return id < 0 ? Integer.MIN_VALUE : id;
+	}
+
+	/**
+	 * Iterates the triples of one subject or of all subjects, filtered by predicate and object.
+	 */
+	private class TripleIterator extends NiceIterator<Triple> {
+
+		private final int predicate;
+		private final int object;
+		private final int lastSubject;
+
+		private int subject;
+		private int pos;
+		private boolean ready = false;
+
+		TripleIterator(int subject, int predicate, int object) {
+			this.predicate = predicate;
+			this.object = object;
+			this.subject = subject == ANY ? 0 : subject;
+			this.lastSubject = subject == ANY ? offsets.length - 2 : subject;
+			this.pos = this.subject <= lastSubject ? offsets[this.subject] : 0;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (ready) {
+				return true;
+			}
+
+			while (subject <= lastSubject) {
+				for (int end = offsets[subject + 1]; pos < end; pos++) {
+					if ((predicate == ANY || predicates[pos] == predicate) && (object == ANY || objects[pos] == object)) {
+						ready = true;
+						return true;
+					}
+				}
+
+				subject++;
+			}
+
+			return false;
+		}
+
+		@Override
+		public Triple next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			ready = false;
+
+			Triple triple = Triple.create(terms.get(subject), terms.get(predicates[pos]), terms.get(objects[pos]));
+			pos++;
+
+			return triple;
+		}
+	}
+
+	/**
+	 * Collects triples, e.g. straight from a parser, and sorts them into a compact graph. Quads are
+	 * added as triples. Duplicate triples are dropped.
+	 */
+	static class Builder extends StreamRDFBase {
+
+		private final TermDictionary terms = new TermDictionary();
+
+		private int[] subjects = new int[1024];
+		private int[] predicates = new int[1024];
+		private int[] objects = new int[1024];
+		private int size = 0;
+
+		@Override
+		public void triple(Triple triple) {
+			if (size == subjects.length) {
+				int capacity = size + (size >> 1);
+
+				subjects = Arrays.copyOf(subjects, capacity);
+				predicates = Arrays.copyOf(predicates, capacity);
+				objects = Arrays.copyOf(objects, capacity);
+			}
+
+			subjects[size] = terms.intern(triple.getSubject());
+			predicates[size] = terms.intern(triple.getPredicate());
+			objects[size] = terms.intern(triple.getObject());
+			size++;
+		}
+
+		@Override
+		public void quad(Quad quad) {
+			triple(quad.asTriple());
+		}
+
+		/**
+		 * Sorts the triples by subject. The builder must not be used afterwards.
+		 */
+		CompactGraph build() {
+			terms.trim();
+
+			// Counting sort by subject id, predicate and object packed into one sortable key
+			int[] offsets = new int[terms.size() + 1];
+
+			for (int i = 0; i < size; i++) {
+				offsets[subjects[i] + 1]++;
+			}
+
+			for (int id = 0; id < terms.size(); id++) {
+				offsets[id + 1] += offsets[id];
+			}
+
+			int[] fill = Arrays.copyOf(offsets, terms.size());
+			long[] keys = new long[size];
+
+			for (int i = 0; i < size; i++) {
+				keys[fill[subjects[i]]++] = ((long) predicates[i] << 32) | (objects[i] & 0xFFFFFFFFL);
+			}
+
+			subjects = null;
+			predicates = null;
+			objects = null;
+			fill = null;
+
+			// Sort the triples of each subject and drop duplicates
+			int length = 0;
+
+			for (int id = 0; id < terms.size(); id++) {
+				int start = offsets[id];
+				int end = offsets[id + 1];
+
+				Arrays.sort(keys, start, end);
+				offsets[id] = length;
+
+				for (int i = start; i < end; i++) {
+					if (i == start || keys[i] != keys[i - 1]) {
+						keys[length++] = keys[i];
+					}
+				}
+			}
+
+			offsets[terms.size()] = length;
+
+			int[] sortedPredicates = new int[length];
+			int[] sortedObjects = new int[length];
+
+			for (int i = 0; i < length; i++) {
+				sortedPredicates[i] = (int) (keys[i] >>> 32);
+				sortedObjects[i] = (int) keys[i];
+			}
+
+			return new CompactGraph(terms, offsets, sortedPredicates, sortedObjects);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package sf.net.plugin.rdf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import com.iqser.core.exception.IQserException;
+import com.iqser.core.model.Content;
+
+/**
+ * Collects contents for the GIN core and submits them in batches. A batch is flushed when it
+ * reaches the batch size or when the flush interval passed since the last flush. The interval is
+ * checked when a content is collected and by {@link #flushIfDue()}, so a batch does not wait while
+ * the synchronization passes unchanged subjects. Contents that fail are reported per batch and do
+ * not stop the rest of the batch.
+ */
+class ContentBatcher {
+
+	private static Logger LOGGER = Logger.getLogger(ContentBatcher.class);
+
+	// The number of failed content URLs listed in the report of a batch
+	private static final int MAX_REPORTED_FAILURES = 10;
+
+	/**
+	 * Passes a single content to the GIN core.
+	 */
+	interface Submitter {
+
+		/**
+		 * @param content the content
+		 * @param update true to update an existing content, false to add it
+		 * @param fingerprint the fingerprint of the content's subject
+		 * @throws IQserException if the core rejected the content
+		 */
+		void submit(Content content, boolean update, long fingerprint) throws IQserException;
+	}
+
+	private final Submitter submitter;
+	private final int batchSize;
+	private final long flushMillis;
+
+	private List<Pending> batch;
+	private long lastFlush = System.currentTimeMillis();
+
+	private long submitted = 0;
+	private long failed = 0;
+
+	ContentBatcher(Submitter submitter, int batchSize, long flushMillis) {
+		this.submitter = submitter;
+		this.batchSize = Math.max(1, batchSize);
+		this.flushMillis = flushMillis;
+		this.batch = new ArrayList<Pending>(this.batchSize);
+	}
+
+	synchronized void add(Content content, long fingerprint) {
+		enqueue(new Pending(content, false, fingerprint));
+	}
+
+	synchronized void update(Content content, long fingerprint) {
+		enqueue(new Pending(content, true, fingerprint));
+	}
+
+	/**
+	 * Submits the collected contents, if the flush interval passed since the last flush.
+	 */
+	synchronized void flushIfDue() {
+		if (isDue()) {
+			flush();
+		}
+	}
+
+	/**
+	 * Submits all collected contents.
+	 */
+	synchronized void flush() {
+		lastFlush = System.currentTimeMillis();
+
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		List<Pending> current = batch;
+		batch = new ArrayList<Pending>(batchSize);
+
+		List<String> failures = new ArrayList<String>();
+
+		for (Pending pending : current) {
+			try {
+				submitter.submit(pending.content, pending.update, pending.fingerprint);
+			} catch (IQserException e) {
+				failures.add(pending.content.getContentUrl() + " (" + e.getLocalizedMessage() + ")");
+			} catch (RuntimeException e) {
+				failures.add(pending.content.getContentUrl() + " (" + e + ")");
+			}
+		}
+
+		submitted += current.size() - failures.size();
+		failed += failures.size();
+
+		if (failures.isEmpty()) {
+			LOGGER.debug("Submitted batch of " + current.size() + " contents");
+		} else {
+			LOGGER.error("Unable to submit " + failures.size() + " of " + current.size() + " contents: "
+					+ failures.subList(0, Math.min(failures.size(), MAX_REPORTED_FAILURES))
+					+ (failures.size() > MAX_REPORTED_FAILURES ? " ..." : ""));
+		}
+	}
+
+	synchronized long getSubmitted() {
+		return submitted;
+	}
+
+	synchronized long getFailed() {
+		return failed;
+	}
+
+	private void enqueue(Pending pending) {
+		batch.add(pending);
+
+		if (batch.size() >= batchSize || isDue()) {
+			flush();
+		}
+	}
+
+	private boolean isDue() {
+		return flushMillis > 0 && !batch.isEmpty() && System.currentTimeMillis() - lastFlush >= flushMillis;
+	}
+
+	private static class Pending {
+
+		final Content content;
+		final boolean update;
+		final long fingerprint;
+
+		Pending(Content content, boolean update, long fingerprint) {
+			this.content = content;
+			this.update = update;
+			this.fingerprint = fingerprint;
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package sf.net.plugin.rdf;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Literal;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.vocabulary.RDF;
+import com.iqser.core.model.Attribute;
+import com.iqser.core.model.Content;
+
+/**
+ * Builds the GIN content object of a resource from its statements. The statements may either come
+ * from the model of the provider or from a triple stream.
+ */
+class ContentBuilder {
+
+	private static final String ATTRIBUTE_NAME = "NAME";
+	private static final String ATTRIBUTE_RDFNAMESPACE = "RDFNAMESPACE";
+
+	private final String provider;
+	private final String contentType;
+	private final MappingPlan plan;
+
+	// Empty model used to wrap streamed triples as statements, nothing is ever added
+	private final Model view = ModelFactory.createDefaultModel();
+
+	ContentBuilder(String provider, String contentType, MappingPlan plan) {
+		this.provider = provider;
+		this.contentType = contentType;
+		this.plan = plan;
+	}
+
+	/**
+	 * Builds the content of a streamed subject.
+	 *
+	 * @param subject the subject node
+	 * @param triples all triples of the subject
+	 * @return the content or null, if the subject is a RDF sequence
+	 */
+	Content build(Node subject, List<Triple> triples) {
+		return build(asResource(subject), asStatements(triples).iterator());
+	}
+
+	/**
+	 * Wraps a streamed subject as resource.
+	 *
+	 * @param subject the subject node
+	 * @return the resource
+	 */
+	Resource asResource(Node subject) {
+		return view.wrapAsResource(subject);
+	}
+
+	/**
+	 * Wraps streamed triples as statements.
+	 *
+	 * @param triples the triples
+	 * @return the statements
+	 */
+	List<Statement> asStatements(List<Triple> triples) {
+		List<Statement> statements = new ArrayList<Statement>(triples.size());
+
+		for (Triple triple : triples) {
+			statements.add(view.asStatement(triple));
+		}
+
+		return statements;
+	}
+
+	/**
+	 * Builds the content of a resource.
+	 *
+	 * @param resource the resource
+	 * @param iter the statements of the resource
+	 * @return the content or null, if the resource is a RDF sequence
+	 */
+	Content build(Resource resource, Iterator<Statement> iter) {
+		Content c = new Content();
+
+		c.setContentUrl(resource.getURI());
+		c.setProvider(provider);
+		c.setType(contentType);
+
+		while (iter.hasNext()) {
+		    Statement stmt      = iter.next();           // get next statement
+		    RDFNode   object    = stmt.getObject();      // get the object
+		    PredicateMapping mapping = plan.get(stmt.getPredicate());
+
+		    // Sequences are no contents, however rdf:type is mapped
+		    if (RDF.type.equals(stmt.getPredicate()) && object.toString().endsWith("Seq")) {
+		    	return null;
+		    }
+
+		    if (mapping.isDropped() || mapping.isTypePredicate()) {
+		    	continue;
+		    }
+
+		    String	  value		= object.toString();
+		    int       type		= mapping.getType();
+
+		    if (object.isLiteral()) {
+		    	Literal literal = object.asLiteral();
+
+		    	if (type == PredicateMapping.TYPE_FROM_DATATYPE) {
+		    		type = MappingPlan.typeOf(literal);
+		    	}
+
+		    	// Typed values go without their datatype suffix
+		    	if (type != Attribute.ATTRIBUTE_TYPE_TEXT) {
+		    		value = literal.getLexicalForm();
+		    	}
+		    } else if (type == PredicateMapping.TYPE_FROM_DATATYPE) {
+		    	type = Attribute.ATTRIBUTE_TYPE_TEXT;
+		    }
+
+		    c.addAttribute(new Attribute(mapping.getName(), value, type, mapping.isKey(object.isLiteral())));
+		}
+
+		if (resource.getLocalName() != null && c.getAttributeByName("Name") == null) {
+			c.addAttribute(new Attribute(ATTRIBUTE_NAME, resource.getLocalName(), Attribute.ATTRIBUTE_TYPE_TEXT, true));
+		}
+
+		if (resource.getNameSpace() != null) {
+			c.addAttribute(new Attribute(ATTRIBUTE_RDFNAMESPACE, resource.getNameSpace(), Attribute.ATTRIBUTE_TYPE_TEXT));
+		}
+
+		return c;
+	}
+}
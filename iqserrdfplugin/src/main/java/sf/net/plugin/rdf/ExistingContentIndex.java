@@ -0,0 +1,52 @@
+package sf.net.plugin.rdf;
+
+import java.util.Collection;
+
+import com.iqser.core.model.Content;
+
+/**
+ * Index of the contents the GIN core already holds for the provider, loaded once per
+ * synchronization. Only the modification date is kept, keyed by the 64 bit hash of the content
+ * URL, so ten million contents take about 256 MB.
+ */
+class ExistingContentIndex {
+
+	private final LongLongHashMap modificationDates;
+
+	private ExistingContentIndex(LongLongHashMap modificationDates) {
+		this.modificationDates = modificationDates;
+	}
+
+	/**
+	 * Builds the index of the given contents.
+	 *
+	 * @param contents the existing contents
+	 * @return the index
+	 */
+	static ExistingContentIndex of(Collection<Content> contents) {
+		LongLongHashMap modificationDates = new LongLongHashMap(contents.size());
+
+		for (Content c : contents) {
+			if (c.getContentUrl() != null) {
+				modificationDates.put(Fingerprints.hash(c.getContentUrl()), c.getModificationDate());
+			}
+		}
+
+		return new ExistingContentIndex(modificationDates);
+	}
+
+	boolean contains(String url) {
+		return url != null && modificationDates.containsKey(Fingerprints.hash(url));
+	}
+
+	/**
+	 * @return the modification date of the content or -1, if there is no such content
+	 */
+	long getModificationDate(String url) {
+		return url == null ? -1 : modificationDates.get(Fingerprints.hash(url), -1);
+	}
+
+	int size() {
+		return modificationDates.size();
+	}
+}
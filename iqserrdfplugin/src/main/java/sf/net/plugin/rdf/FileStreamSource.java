@@ -0,0 +1,81 @@
+package sf.net.plugin.rdf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.riot.system.StreamRDFBase;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.iqser.core.exception.IQserException;
+
+/**
+ * Streams a RDF file or document. The subjects of the last complete pass are kept in a
+ * {@link SubjectCache}, so lookups of single subjects only scan the whole source before the first
+ * pass.
+ */
+class FileStreamSource implements StreamSource {
+
+	private final String url;
+
+	private SubjectCache cache = null;
+
+	FileStreamSource(String url) {
+		this.url = url;
+	}
+
+	public void stream(final SubjectHandler handler) throws IQserException {
+		final SubjectCache next = SubjectCache.create();
+		boolean complete = false;
+
+		try {
+			SubjectGrouper.parse(url, new SubjectHandler() {
+				public void handle(Node subject, List<Triple> triples) throws IQserException {
+					next.add(subject, triples);
+					handler.handle(subject, triples);
+				}
+			});
+
+			next.seal();
+			complete = true;
+		} finally {
+			if (complete) {
+				replaceCache(next);
+			} else {
+				next.close();
+			}
+		}
+	}
+
+	public synchronized List<Triple> describe(String uri) {
+		if (cache != null) {
+			return cache.get(uri);
+		}
+
+		final Node subject = Node.createURI(uri);
+		final List<Triple> triples = new ArrayList<Triple>();
+
+		SourceStreams.parse(new StreamRDFBase() {
+			@Override
+			public void triple(Triple triple) {
+				if (subject.equals(triple.getSubject())) {
+					triples.add(triple);
+				}
+			}
+		}, url);
+
+		return triples;
+	}
+
+	public void close() {
+		replaceCache(null);
+	}
+
+	private synchronized void replaceCache(SubjectCache next) {
+		if (cache != null) {
+			cache.close();
+		}
+
+		cache = next;
+	}
+}
@@ -0,0 +1,140 @@
+package sf.net.plugin.rdf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Local store of the fingerprints of all subjects that were passed to the GIN core. Subjects are
+ * kept as 64 bit hashes of their URI, so each entry needs 16 bytes in memory and on disk.
+ */
+class FingerprintStore {
+
+	private static Logger LOGGER = Logger.getLogger(FingerprintStore.class);
+
+	private static final int MAGIC = 0x52444646;
+
+	private final File file;
+	private final LongLongHashMap fingerprints;
+
+	private FingerprintStore(File file, LongLongHashMap fingerprints) {
+		this.file = file;
+		this.fingerprints = fingerprints;
+	}
+
+	/**
+	 * Opens the fingerprint store in the given file. A missing or unreadable file results in an
+	 * empty store.
+	 *
+	 * @param file the file of the store
+	 * @return the store
+	 */
+	static FingerprintStore open(File file) {
+		LongLongHashMap fingerprints = new LongLongHashMap();
+
+		if (file.exists()) {
+			try {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+				try {
+					if (in.readInt() != MAGIC) {
+						throw new IOException("not a fingerprint file");
+					}
+
+					int size = in.readInt();
+					fingerprints = new LongLongHashMap(size);
+
+					for (int i = 0; i < size; i++) {
+						fingerprints.put(in.readLong(), in.readLong());
+					}
+				} finally {
+					in.close();
+				}
+
+				LOGGER.info("Loaded " + fingerprints.size() + " fingerprints from " + file);
+			} catch (IOException e) {
+				LOGGER.warn("Unable to load fingerprints from " + file + " - " + e.getLocalizedMessage());
+				fingerprints = new LongLongHashMap();
+			}
+		}
+
+		return new FingerprintStore(file, fingerprints);
+	}
+
+	/**
+	 * @return true, if a fingerprint is stored for the subject
+	 */
+	synchronized boolean contains(String uri) {
+		return fingerprints.containsKey(Fingerprints.hash(uri));
+	}
+
+	/**
+	 * @return true, if the stored fingerprint of the subject equals the given one
+	 */
+	synchronized boolean matches(String uri, long fingerprint) {
+		long key = Fingerprints.hash(uri);
+
+		return fingerprints.containsKey(key) && fingerprints.get(key, 0) == fingerprint;
+	}
+
+	synchronized void put(String uri, long fingerprint) {
+		fingerprints.put(Fingerprints.hash(uri), fingerprint);
+	}
+
+	synchronized void remove(String uri) {
+		fingerprints.remove(Fingerprints.hash(uri));
+	}
+
+	/**
+	 * Writes the store to its file. The entries are written to a temporary file first, so a crash
+	 * while saving keeps the previous state.
+	 */
+	synchronized void save() {
+		File tmp = new File(file.getPath() + ".tmp");
+
+		try {
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(fingerprints.size());
+
+				final IOException[] error = new IOException[1];
+
+				fingerprints.forEach(new LongLongHashMap.EntryVisitor() {
+					public void visit(long key, long value) {
+						try {
+							out.writeLong(key);
+							out.writeLong(value);
+						} catch (IOException e) {
+							error[0] = e;
+						}
+					}
+				});
+
+				if (error[0] != null) {
+					throw error[0];
+				}
+			} finally {
+				out.close();
+			}
+
+			if (file.exists() && !file.delete()) {
+				throw new IOException("unable to replace " + file);
+			}
+
+			if (!tmp.renameTo(file)) {
+				throw new IOException("unable to rename " + tmp);
+			}
+		} catch (IOException e) {
+			LOGGER.error("Unable to save fingerprints to " + file + " - " + e.getLocalizedMessage());
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package sf.net.plugin.rdf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.rdf.model.Statement;
+
+/**
+ * Stable 64 bit hashes of URIs and of the statements of a subject.
+ */
+final class Fingerprints {
+
+	private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+	private static final long FNV_PRIME = 0x100000001B3L;
+
+	private Fingerprints() {
+	}
+
+	/**
+	 * Hashes a string, e.g. the URI of a subject.
+	 *
+	 * @param value the string
+	 * @return the 64 bit hash
+	 */
+	static long hash(String value) {
+		return finish(update(FNV_OFFSET, value));
+	}
+
+	/**
+	 * Computes the fingerprint of a subject over its sorted statements. The fingerprint does not
+	 * depend on the order of the statements or on the labels of blank nodes, so it is stable
+	 * between two parses of an unchanged source.
+	 *
+	 * @param statements the statements of the subject
+	 * @return the 64 bit fingerprint
+	 */
+	static long of(List<Statement> statements) {
+		List<String> lines = new ArrayList<String>(statements.size());
+
+		for (Statement stmt : statements) {
+			lines.add(stmt.getPredicate().getURI() + ' ' + format(stmt.getObject().asNode()));
+		}
+
+		Collections.sort(lines);
+
+		long h = FNV_OFFSET;
+
+		for (String line : lines) {
+			h = update(h, line);
+			h = (h ^ '\n') * FNV_PRIME;
+		}
+
+		return finish(h);
+	}
+
+	static String format(Node node) {
+		if (node.isBlank()) {
+			return "_:";
+		} else if (node.isLiteral()) {
+			StringBuilder sb = new StringBuilder();
+			sb.append('"').append(node.getLiteralLexicalForm()).append('"');
+
+			if (node.getLiteralLanguage() != null && node.getLiteralLanguage().length() > 0) {
+				sb.append('@').append(node.getLiteralLanguage());
+			} else if (node.getLiteralDatatypeURI() != null) {
+				sb.append("^^").append(node.getLiteralDatatypeURI());
+			}
+
+			return sb.toString();
+		}
+
+		return node.toString();
+	}
+
+	private static long update(long h, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char ch = value.charAt(i);
+			h = (h ^ (ch & 0xFF)) * FNV_PRIME;
+			h = (h ^ (ch >>> 8)) * FNV_PRIME;
+		}
+
+		return h;
+	}
+
+	// Final avalanche of MurmurHash3, spreads the FNV bits over the whole word
+	private static long finish(long h) {
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+
+		return h;
+	}
+}
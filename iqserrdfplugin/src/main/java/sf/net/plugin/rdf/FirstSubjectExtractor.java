@@ -0,0 +1,148 @@
+package sf.net.plugin.rdf;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFBase;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.Quad;
+
+/**
+ * Reads the URI of the first subject of a RDF payload. Parsing stops as soon as the first triple
+ * with a URI subject is seen, so no model is built and the rest of the payload is never read. The
+ * format is detected from the start of the payload: RDF/XML, or Turtle which also covers
+ * N-Triples.
+ */
+class FirstSubjectExtractor extends StreamRDFBase {
+
+	// Number of bytes inspected to detect the format
+	private static final int HEADER_SIZE = 4096;
+
+	private String subject = null;
+
+	private FirstSubjectExtractor() {
+	}
+
+	/**
+	 * @param in the RDF payload
+	 * @return the URI of the first subject or null, if the payload has no URI subject
+	 * @throws IOException if the payload cannot be read
+	 */
+	static String extract(InputStream in) throws IOException {
+		InputStream buffered = in.markSupported() ? in : new BufferedInputStream(in, HEADER_SIZE);
+		Lang lang = detect(buffered);
+		FirstSubjectExtractor extractor = new FirstSubjectExtractor();
+
+		try {
+			RDFDataMgr.parse(extractor, buffered, lang);
+		} catch (RuntimeException e) {
+			// Parsers may wrap the exception stopping them, so only the state tells
+			if (extractor.subject == null) {
+				throw e;
+			}
+		}
+
+		return extractor.subject;
+	}
+
+	@Override
+	public void triple(Triple triple) {
+		if (subject == null && triple.getSubject().isURI()) {
+			subject = triple.getSubject().getURI();
+			throw new Stop();
+		}
+	}
+
+	@Override
+	public void quad(Quad quad) {
+		triple(quad.asTriple());
+	}
+
+	/**
+	 * Detects the format of a payload without consuming it.
+	 *
+	 * @param in the payload, supporting mark and reset
+	 * @return {@link Lang#RDFXML} or {@link Lang#TURTLE}
+	 */
+	static Lang detect(InputStream in) throws IOException {
+		byte[] header = new byte[HEADER_SIZE];
+		int length = 0;
+
+		in.mark(HEADER_SIZE);
+
+		try {
+			int read;
+
+			while (length < HEADER_SIZE && (read = in.read(header, length, HEADER_SIZE - length)) > 0) {
+				length += read;
+			}
+		} finally {
+			in.reset();
+		}
+
+		int i = skipBlanksAndComments(header, length, 0);
+
+		if (i >= length || header[i] != '<') {
+			// Prefix or base directives, blank nodes etc.
+			return Lang.TURTLE;
+		}
+
+		if (i + 1 < length && (header[i + 1] == '?' || header[i + 1] == '!')) {
+			return Lang.RDFXML;
+		}
+
+		// An IRI ends with '>', while an XML start tag continues with attributes
+		for (int j = i + 1; j < length; j++) {
+			if (header[j] == '>') {
+				return Lang.TURTLE;
+			} else if (isBlank(header[j])) {
+				return Lang.RDFXML;
+			}
+		}
+
+		return Lang.RDFXML;
+	}
+
+	private static int skipBlanksAndComments(byte[] header, int length, int i) {
+		// Byte order mark
+		if (length >= 3 && (header[0] & 0xFF) == 0xEF && (header[1] & 0xFF) == 0xBB && (header[2] & 0xFF) == 0xBF) {
+			i = 3;
+		}
+
+		while (i < length) {
+			if (isBlank(header[i])) {
+				i++;
+			} else if (header[i] == '#') {
+				while (i < length && header[i] != '\n') {
+					i++;
+				}
+			} else {
+				break;
+			}
+		}
+
+		return i;
+	}
+
+	private static boolean isBlank(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+	}
+
+	/**
+	 * Stops the parser once the first subject is known.
+	 */
+	private static class Stop extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			// Thrown once per call, the stack trace is of no use
+			return this;
+		}
+	}
+}
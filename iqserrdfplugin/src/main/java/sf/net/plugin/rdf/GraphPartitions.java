@@ -0,0 +1,177 @@
+package sf.net.plugin.rdf;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFLib;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.compose.MultiUnion;
+import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.query.DatasetFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+
+/**
+ * Keeps the named graphs of TriG and N-Quads sources apart. Sources are read into a dataset,
+ * triple sources into its default graph only, and the provider works on the union of all graphs.
+ * Each graph has a fingerprint, so a changed source only needs to be compared in the graphs whose
+ * fingerprint changed.
+ */
+final class GraphPartitions {
+
+	// Name of the default graph among the named graphs
+	static final String DEFAULT_GRAPH = "";
+
+	private GraphPartitions() {
+	}
+
+	/**
+	 * Loads the source at the given URL into a new dataset.
+	 *
+	 * @param url the URL of the source
+	 * @return the dataset
+	 */
+	static Dataset load(String url) {
+		Dataset dataset = DatasetFactory.createMem();
+		SourceStreams.parse(StreamRDFLib.dataset(dataset.asDatasetGraph()), url);
+
+		return dataset;
+	}
+
+	/**
+	 * Reads a source into a new dataset.
+	 *
+	 * @param in the uncompressed source
+	 * @param url the URL of the source
+	 * @param lang the syntax of the source
+	 * @return the dataset
+	 */
+	static Dataset read(InputStream in, String url, Lang lang) {
+		Dataset dataset = DatasetFactory.createMem();
+		RDFDataMgr.read(dataset, in, url, lang);
+
+		return dataset;
+	}
+
+	/**
+	 * @return a read-only union of all graphs, or the default model if there are no named graphs
+	 */
+	static Model union(Dataset dataset) {
+		Map<String, Graph> graphs = graphs(dataset);
+
+		if (graphs.size() == 1) {
+			return dataset.getDefaultModel();
+		}
+
+		MultiUnion union = new MultiUnion();
+
+		for (Graph graph : graphs.values()) {
+			union.addGraph(graph);
+		}
+
+		return ModelFactory.createModelForGraph(union);
+	}
+
+	/**
+	 * Returns the graphs a union is made of, so they are scanned one by one. A scan of the union
+	 * itself keeps every triple in a set to drop those contained in several graphs.
+	 *
+	 * @param graph the graph
+	 * @return the base graph and the other graphs of a union, or the graph itself
+	 */
+	static List<Graph> parts(Graph graph) {
+		if (!(graph instanceof MultiUnion)) {
+			return Collections.singletonList(graph);
+		}
+
+		MultiUnion union = (MultiUnion) graph;
+		List<Graph> parts = new ArrayList<Graph>();
+
+		if (union.getBaseGraph() != null) {
+			parts.addAll(parts(union.getBaseGraph()));
+		}
+
+		for (Graph part : union.getSubGraphs()) {
+			parts.addAll(parts(part));
+		}
+
+		return parts;
+	}
+
+	/**
+	 * @return the graphs of the dataset by name, the default graph first
+	 */
+	static Map<String, Graph> graphs(Dataset dataset) {
+		Map<String, Graph> graphs = new LinkedHashMap<String, Graph>();
+		graphs.put(DEFAULT_GRAPH, dataset.getDefaultModel().getGraph());
+
+		Iterator<String> names = dataset.listNames();
+
+		while (names.hasNext()) {
+			String name = names.next();
+			graphs.put(name, dataset.getNamedModel(name).getGraph());
+		}
+
+		return graphs;
+	}
+
+	/**
+	 * @return the number of triples in all graphs of the dataset
+	 */
+	static long size(Dataset dataset) {
+		long size = 0;
+
+		for (Graph graph : graphs(dataset).values()) {
+			size += graph.size();
+		}
+
+		return size;
+	}
+
+	/**
+	 * @return the fingerprints of the graphs of the dataset by name
+	 */
+	static Map<String, Long> fingerprints(Dataset dataset) {
+		Map<String, Long> fingerprints = new LinkedHashMap<String, Long>();
+
+		for (Map.Entry<String, Graph> graph : graphs(dataset).entrySet()) {
+			fingerprints.put(graph.getKey(), fingerprint(graph.getValue()));
+		}
+
+		return fingerprints;
+	}
+
+	/**
+	 * Computes the fingerprint of a graph as the sum of the hashes of its triples, so it does not
+	 * depend on their order. Blank nodes are hashed without their labels, like in subject
+	 * fingerprints.
+	 */
+	static long fingerprint(Graph graph) {
+		ExtendedIterator<Triple> iter = graph.find(Node.ANY, Node.ANY, Node.ANY);
+		long fingerprint = graph.size();
+
+		try {
+			while (iter.hasNext()) {
+				Triple triple = iter.next();
+
+				fingerprint += Fingerprints.hash(Fingerprints.format(triple.getSubject()) + ' '
+						+ triple.getPredicate().getURI() + ' ' + Fingerprints.format(triple.getObject()));
+			}
+		} finally {
+			iter.close();
+		}
+
+		return fingerprint;
+	}
+}
@@ -0,0 +1,34 @@
+package sf.net.plugin.rdf;
+
+import java.net.URLConnection;
+
+/**
+ * Connect and read timeouts of the HTTP requests to a SPARQL service, so an unresponsive service
+ * fails a synchronization instead of blocking it. A timeout of 0 means no timeout.
+ */
+class HttpTimeouts {
+
+	static final HttpTimeouts NONE = new HttpTimeouts(0, 0);
+
+	private final int connectMillis;
+	private final int readMillis;
+
+	/**
+	 * @param connectMillis the maximum time to establish a connection
+	 * @param readMillis the maximum time to wait for data on an established connection
+	 */
+	HttpTimeouts(int connectMillis, int readMillis) {
+		this.connectMillis = Math.max(0, connectMillis);
+		this.readMillis = Math.max(0, readMillis);
+	}
+
+	/**
+	 * Sets the timeouts of a connection before it is connected.
+	 *
+	 * @param connection the connection
+	 */
+	void apply(URLConnection connection) {
+		connection.setConnectTimeout(connectMillis);
+		connection.setReadTimeout(readMillis);
+	}
+}
@@ -0,0 +1,91 @@
+package sf.net.plugin.rdf;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free latency histogram with power of two buckets in microseconds. Percentiles are reported
+ * as the upper bound of their bucket, i.e. they are at most twice the exact value.
+ */
+class LatencyHistogram {
+
+	// Bucket i holds latencies below 2^i microseconds, the last one everything above
+	private static final int BUCKETS = 40;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	/**
+	 * @param nanos the measured latency in nanoseconds
+	 */
+	void record(long nanos) {
+		long micros = Math.max(0, nanos / 1000);
+		int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+
+		buckets.incrementAndGet(bucket);
+		count.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+
+		long max = maxNanos.get();
+
+		while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+			max = maxNanos.get();
+		}
+	}
+
+	/**
+	 * @param since the start as returned by {@link System#nanoTime()}
+	 */
+	void recordSince(long since) {
+		record(System.nanoTime() - since);
+	}
+
+	void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+
+		count.set(0);
+		totalNanos.set(0);
+		maxNanos.set(0);
+	}
+
+	/**
+	 * @return a consistent enough copy for reporting
+	 */
+	LatencySnapshot snapshot() {
+		long[] copy = new long[BUCKETS];
+		long total = 0;
+
+		for (int i = 0; i < BUCKETS; i++) {
+			copy[i] = buckets.get(i);
+			total += copy[i];
+		}
+
+		double mean = total == 0 ? 0 : totalNanos.get() / (double) count.get() / 1e6;
+
+		return new LatencySnapshot(total, mean, percentile(copy, total, 0.5), percentile(copy, total, 0.95),
+				percentile(copy, total, 0.99), maxNanos.get() / 1e6);
+	}
+
+	private static double percentile(long[] buckets, long total, double quantile) {
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = (long) Math.ceil(total * quantile);
+		long seen = 0;
+
+		for (int i = 0; i < buckets.length; i++) {
+			seen += buckets[i];
+
+			if (seen >= rank) {
+				return (1L << i) / 1000.0;
+			}
+		}
+
+		return (1L << (buckets.length - 1)) / 1000.0;
+	}
+}
@@ -0,0 +1,149 @@
+package sf.net.plugin.rdf;
+
+import java.util.List;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+
+/**
+ * The subjects that still exist in the source, built once per housekeeping cycle. Subjects are
+ * kept as 64 bit hashes of their URI. Alternatively a Bloom filter rules out most removed
+ * subjects, and only its positives are checked exactly against the graph.
+ */
+class LiveSubjectSet {
+
+	private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+
+	private final LongHashSet hashes;
+	private final BloomFilter bloom;
+	private final Graph graph;
+
+	private LiveSubjectSet(LongHashSet hashes, BloomFilter bloom, Graph graph) {
+		this.hashes = hashes;
+		this.bloom = bloom;
+		this.graph = graph;
+	}
+
+	/**
+	 * @param hashes the hashed URIs of the live subjects
+	 * @return the set of the given subjects
+	 */
+	static LiveSubjectSet of(LongHashSet hashes) {
+		return new LiveSubjectSet(hashes, null, null);
+	}
+
+	/**
+	 * Collects the hashed URIs of all subjects of the graph. The graphs of a union are scanned one
+	 * by one, see {@link GraphPartitions#parts(Graph)}. A subject is hashed once per run of its
+	 * triples, like in {@link #bloom(Graph)}.
+	 *
+	 * @param graph the graph
+	 * @return the set of the subjects
+	 */
+	static LiveSubjectSet hashed(Graph graph) {
+		LongHashSet hashes = new LongHashSet();
+
+		for (Graph part : GraphPartitions.parts(graph)) {
+			ExtendedIterator<Triple> iter = part.find(Node.ANY, Node.ANY, Node.ANY);
+			Node last = null;
+
+			try {
+				while (iter.hasNext()) {
+					Node subject = iter.next().getSubject();
+
+					if (subject.isURI() && !subject.equals(last)) {
+						hashes.add(Fingerprints.hash(subject.getURI()));
+					}
+
+					last = subject;
+				}
+			} finally {
+				iter.close();
+			}
+		}
+
+		return of(hashes);
+	}
+
+	/**
+	 * Collects the subjects of the graph into a Bloom filter. Positives are checked against the
+	 * graph itself, so the set is exact without holding every subject.
+	 * <p>
+	 * The filter is sized by a first pass over the graph that counts its subjects. The graphs
+	 * keep the triples of a subject together, so a change of the subject marks another one. The
+	 * graphs of a union are scanned one by one; subjects contained in several of them are counted
+	 * and added more than once.
+	 *
+	 * @param graph the graph
+	 * @return the set of the subjects
+	 */
+	static LiveSubjectSet bloom(Graph graph) {
+		List<Graph> parts = GraphPartitions.parts(graph);
+		long subjects = 0;
+
+		for (Graph part : parts) {
+			subjects += countSubjects(part);
+		}
+
+		BloomFilter bloom = new BloomFilter(subjects, BLOOM_FALSE_POSITIVE_RATE);
+
+		for (Graph part : parts) {
+			ExtendedIterator<Triple> iter = part.find(Node.ANY, Node.ANY, Node.ANY);
+			Node last = null;
+
+			try {
+				while (iter.hasNext()) {
+					Node subject = iter.next().getSubject();
+
+					if (subject.isURI() && !subject.equals(last)) {
+						bloom.add(Fingerprints.hash(subject.getURI()));
+					}
+
+					last = subject;
+				}
+			} finally {
+				iter.close();
+			}
+		}
+
+		return new LiveSubjectSet(null, bloom, graph);
+	}
+
+	private static long countSubjects(Graph graph) {
+		ExtendedIterator<Triple> iter = graph.find(Node.ANY, Node.ANY, Node.ANY);
+		Node last = null;
+		long subjects = 0;
+
+		try {
+			while (iter.hasNext()) {
+				Node subject = iter.next().getSubject();
+
+				if (subject.isURI() && !subject.equals(last)) {
+					subjects++;
+				}
+
+				last = subject;
+			}
+		} finally {
+			iter.close();
+		}
+
+		return subjects;
+	}
+
+	boolean contains(String url) {
+		if (url == null) {
+			return false;
+		}
+
+		long hash = Fingerprints.hash(url);
+
+		if (bloom == null) {
+			return hashes.contains(hash);
+		}
+
+		return bloom.mightContain(hash) && graph.contains(Node.createURI(url), Node.ANY, Node.ANY);
+	}
+}
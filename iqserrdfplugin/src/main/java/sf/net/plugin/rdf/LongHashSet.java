@@ -0,0 +1,101 @@
+package sf.net.plugin.rdf;
+
+/**
+ * Memory efficient set of primitive long values, e.g. hashed subject URIs. Uses open addressing
+ * with linear probing like {@link LongLongHashMap}, so an element costs 8 bytes plus the free
+ * slots.
+ */
+class LongHashSet {
+
+	private static final float LOAD_FACTOR = 0.75f;
+
+	// The value 0 marks a free slot, so it is kept outside of the array
+	private boolean hasZero = false;
+
+	private long[] values;
+	private int mask;
+	private int size = 0;
+
+	LongHashSet() {
+		this(16);
+	}
+
+	LongHashSet(int expectedSize) {
+		int capacity = 16;
+
+		while (capacity * LOAD_FACTOR < expectedSize) {
+			capacity <<= 1;
+		}
+
+		values = new long[capacity];
+		mask = capacity - 1;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean contains(long value) {
+		if (value == 0) {
+			return hasZero;
+		}
+
+		return values[slot(value)] == value;
+	}
+
+	/**
+	 * @return true, if the value was not yet in the set
+	 */
+	boolean add(long value) {
+		if (value == 0) {
+			boolean added = !hasZero;
+			hasZero = true;
+			size += added ? 1 : 0;
+			return added;
+		}
+
+		int slot = slot(value);
+
+		if (values[slot] == value) {
+			return false;
+		}
+
+		if ((size + 1) > values.length * LOAD_FACTOR) {
+			rehash(values.length << 1);
+			slot = slot(value);
+		}
+
+		values[slot] = value;
+		size++;
+
+		return true;
+	}
+
+	private int slot(long value) {
+		int slot = mix(value) & mask;
+
+		while (values[slot] != 0 && values[slot] != value) {
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	private void rehash(int capacity) {
+		long[] old = values;
+
+		values = new long[capacity];
+		mask = capacity - 1;
+
+		for (int i = 0; i < old.length; i++) {
+			if (old[i] != 0) {
+				values[slot(old[i])] = old[i];
+			}
+		}
+	}
+
+	private static int mix(long value) {
+		long h = value * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
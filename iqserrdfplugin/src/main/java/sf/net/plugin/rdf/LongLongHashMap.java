@@ -0,0 +1,192 @@
+package sf.net.plugin.rdf;
+
+import java.util.Arrays;
+
+/**
+ * Memory efficient hash map from primitive long keys to long values. Uses open addressing with
+ * linear probing in two parallel arrays, so an entry costs 16 bytes plus the free slots instead of
+ * the boxed keys, values and entry objects of a {@link java.util.HashMap}.
+ */
+class LongLongHashMap {
+
+	private static final float LOAD_FACTOR = 0.75f;
+
+	// The key 0 marks a free slot, so it is kept outside of the arrays
+	private boolean hasZeroKey = false;
+	private long zeroValue = 0;
+
+	private long[] keys;
+	private long[] values;
+	private int mask;
+	private int size = 0;
+
+	/**
+	 * Visitor for the entries of the map.
+	 */
+	interface EntryVisitor {
+
+		void visit(long key, long value);
+	}
+
+	LongLongHashMap() {
+		this(16);
+	}
+
+	LongLongHashMap(int expectedSize) {
+		int capacity = 16;
+
+		while (capacity * LOAD_FACTOR < expectedSize) {
+			capacity <<= 1;
+		}
+
+		allocate(capacity);
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean containsKey(long key) {
+		if (key == 0) {
+			return hasZeroKey;
+		}
+
+		return keys[slot(key)] == key;
+	}
+
+	long get(long key, long defaultValue) {
+		if (key == 0) {
+			return hasZeroKey ? zeroValue : defaultValue;
+		}
+
+		int slot = slot(key);
+
+		return keys[slot] == key ? values[slot] : defaultValue;
+	}
+
+	void put(long key, long value) {
+		if (key == 0) {
+			if (!hasZeroKey) {
+				hasZeroKey = true;
+				size++;
+			}
+
+			zeroValue = value;
+			return;
+		}
+
+		int slot = slot(key);
+
+		if (keys[slot] != key) {
+			if ((size + 1) > keys.length * LOAD_FACTOR) {
+				rehash(keys.length << 1);
+				slot = slot(key);
+			}
+
+			keys[slot] = key;
+			size++;
+		}
+
+		values[slot] = value;
+	}
+
+	boolean remove(long key) {
+		if (key == 0) {
+			if (!hasZeroKey) {
+				return false;
+			}
+
+			hasZeroKey = false;
+			size--;
+			return true;
+		}
+
+		int slot = slot(key);
+
+		if (keys[slot] != key) {
+			return false;
+		}
+
+		// Shift the following entries of the probe sequence back, so no tombstones are needed
+		int free = slot;
+		int next = (free + 1) & mask;
+
+		while (keys[next] != 0) {
+			int home = mix(keys[next]) & mask;
+
+			if (((next - home) & mask) >= ((next - free) & mask)) {
+				keys[free] = keys[next];
+				values[free] = values[next];
+				free = next;
+			}
+
+			next = (next + 1) & mask;
+		}
+
+		keys[free] = 0;
+		values[free] = 0;
+		size--;
+
+		return true;
+	}
+
+	void clear() {
+		hasZeroKey = false;
+		zeroValue = 0;
+		size = 0;
+
+		Arrays.fill(keys, 0);
+		Arrays.fill(values, 0);
+	}
+
+	void forEach(EntryVisitor visitor) {
+		if (hasZeroKey) {
+			visitor.visit(0, zeroValue);
+		}
+
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != 0) {
+				visitor.visit(keys[i], values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the slot of the key or the free slot where it would be inserted.
+	 */
+	private int slot(long key) {
+		int slot = mix(key) & mask;
+
+		while (keys[slot] != 0 && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+
+		allocate(capacity);
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != 0) {
+				int slot = slot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new long[capacity];
+		mask = capacity - 1;
+	}
+
+	private static int mix(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
@@ -0,0 +1,172 @@
+package sf.net.plugin.rdf;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.rdf.model.Literal;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.iqser.core.model.Attribute;
+
+/**
+ * Maps predicates to GIN attributes. Each predicate URI is compiled once into a
+ * {@link PredicateMapping}, so building a content only needs a map lookup per statement.
+ * <p>
+ * A mapping file may override the mapping of single predicates. Each line holds a predicate URI
+ * followed by either <code>drop</code> or an attribute name with an optional type
+ * (<code>text</code>, <code>number</code>, <code>date</code>, <code>boolean</code>) and an
+ * optional <code>key</code> or <code>nokey</code>, separated by commas, e.g.
+ * <pre>
+ * http://xmlns.com/foaf/0.1/name    NAME,text,key
+ * http://www.w3.org/2002/07/owl#sameAs    drop
+ * </pre>
+ */
+class MappingPlan {
+
+	private static Logger LOGGER = Logger.getLogger(MappingPlan.class);
+
+	private static final String DROP = "drop";
+
+	// Attribute types of the XSD datatypes, all other literals are text
+	private static final Map<String, Integer> DATATYPES = new HashMap<String, Integer>();
+
+	static {
+		XSDDatatype[] numbers = new XSDDatatype[] { XSDDatatype.XSDdecimal, XSDDatatype.XSDinteger,
+				XSDDatatype.XSDint, XSDDatatype.XSDlong, XSDDatatype.XSDshort, XSDDatatype.XSDbyte,
+				XSDDatatype.XSDdouble, XSDDatatype.XSDfloat, XSDDatatype.XSDnonNegativeInteger,
+				XSDDatatype.XSDnonPositiveInteger, XSDDatatype.XSDpositiveInteger,
+				XSDDatatype.XSDnegativeInteger, XSDDatatype.XSDunsignedLong, XSDDatatype.XSDunsignedInt,
+				XSDDatatype.XSDunsignedShort, XSDDatatype.XSDunsignedByte };
+
+		for (XSDDatatype number : numbers) {
+			DATATYPES.put(number.getURI(), Attribute.ATTRIBUTE_TYPE_NUMBER);
+		}
+
+		DATATYPES.put(XSDDatatype.XSDboolean.getURI(), Attribute.ATTRIBUTE_TYPE_BOOLEAN);
+		DATATYPES.put(XSDDatatype.XSDdate.getURI(), Attribute.ATTRIBUTE_TYPE_DATE);
+		DATATYPES.put(XSDDatatype.XSDdateTime.getURI(), Attribute.ATTRIBUTE_TYPE_DATE);
+	}
+
+	private final Map<String, PredicateMapping> configured;
+	private final ConcurrentMap<String, PredicateMapping> compiled = new ConcurrentHashMap<String, PredicateMapping>();
+
+	private MappingPlan(Map<String, PredicateMapping> configured) {
+		this.configured = configured;
+	}
+
+	/**
+	 * Loads the mapping plan.
+	 *
+	 * @param mappingFile the mapping file or null, to derive all mappings from the predicates
+	 * @return the mapping plan
+	 */
+	static MappingPlan load(String mappingFile) {
+		Map<String, PredicateMapping> configured = new HashMap<String, PredicateMapping>();
+
+		if (mappingFile != null) {
+			try {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(mappingFile), "UTF-8"));
+
+				try {
+					String line;
+
+					while ((line = reader.readLine()) != null) {
+						line = line.trim();
+
+						if (line.length() > 0 && !line.startsWith("#")) {
+							String[] parts = line.split("\\s+", 2);
+							configured.put(parts[0], parse(parts.length > 1 ? parts[1] : DROP));
+						}
+					}
+				} finally {
+					reader.close();
+				}
+
+				LOGGER.info("Loaded " + configured.size() + " predicate mappings from " + mappingFile);
+			} catch (IOException e) {
+				LOGGER.error("Unable to load mapping file " + mappingFile + " - " + e.getLocalizedMessage());
+			}
+		}
+
+		return new MappingPlan(configured);
+	}
+
+	/**
+	 * Returns the compiled mapping of a predicate.
+	 *
+	 * @param predicate the predicate
+	 * @return the mapping
+	 */
+	PredicateMapping get(Property predicate) {
+		PredicateMapping mapping = compiled.get(predicate.getURI());
+
+		if (mapping == null) {
+			mapping = configured.get(predicate.getURI());
+
+			if (mapping == null) {
+				mapping = new PredicateMapping(normalize(predicate.getLocalName()),
+						PredicateMapping.TYPE_FROM_DATATYPE, null, false);
+			}
+
+			compiled.putIfAbsent(predicate.getURI(), mapping);
+		}
+
+		return mapping;
+	}
+
+	/**
+	 * @return the attribute type of a literal, derived from its datatype
+	 */
+	static int typeOf(Literal literal) {
+		String datatype = literal.getDatatypeURI();
+		Integer type = datatype == null ? null : DATATYPES.get(datatype);
+
+		return type == null ? Attribute.ATTRIBUTE_TYPE_TEXT : type.intValue();
+	}
+
+	// Attribute name must be uppercase, without any blanks, etc
+	static String normalize(String name) {
+		return name.toUpperCase().replace(' ', '_').replace("Ä", "AE").replace("Ö", "OE").replace("Ü", "UE").replace("ß", "SS").replaceAll("[^A-Z\\d-_.]", "");
+	}
+
+	private static PredicateMapping parse(String spec) {
+		String[] parts = spec.split("\\s*,\\s*");
+
+		if (parts[0].equalsIgnoreCase(DROP)) {
+			return new PredicateMapping(DROP, Attribute.ATTRIBUTE_TYPE_TEXT, null, true);
+		}
+
+		int type = PredicateMapping.TYPE_FROM_DATATYPE;
+		Boolean key = null;
+
+		for (int i = 1; i < parts.length; i++) {
+			String part = parts[i].toLowerCase();
+
+			if (part.equals("key")) {
+				key = Boolean.TRUE;
+			} else if (part.equals("nokey")) {
+				key = Boolean.FALSE;
+			} else if (part.equals("text")) {
+				type = Attribute.ATTRIBUTE_TYPE_TEXT;
+			} else if (part.equals("number")) {
+				type = Attribute.ATTRIBUTE_TYPE_NUMBER;
+			} else if (part.equals("date")) {
+				type = Attribute.ATTRIBUTE_TYPE_DATE;
+			} else if (part.equals("boolean")) {
+				type = Attribute.ATTRIBUTE_TYPE_BOOLEAN;
+			} else {
+				LOGGER.warn("Ignoring unknown mapping option " + parts[i]);
+			}
+		}
+
+		return new PredicateMapping(normalize(parts[0]), type, key, false);
+	}
+}
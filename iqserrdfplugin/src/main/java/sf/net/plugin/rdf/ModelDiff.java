@@ -0,0 +1,166 @@
+package sf.net.plugin.rdf;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.ResIterator;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+
+/**
+ * Subject level difference between two versions of a source. Only the subjects of graphs whose
+ * fingerprint changed are compared, by a fingerprint of their statements in the union of all
+ * graphs. So the previous version only needs its graphs, the graph fingerprints and the subject
+ * fingerprints. Blank nodes are compared as part of the statements referring to them only.
+ */
+class ModelDiff {
+
+	private final List<Resource> changed = new ArrayList<Resource>();
+	private final List<String> removed = new ArrayList<String>();
+	private final LongLongHashMap fingerprints;
+	private final Map<String, Long> graphFingerprints;
+	private final Model model;
+
+	private int changedGraphs = 0;
+
+	/**
+	 * @param previous the previous version of the source
+	 * @param previousGraphFingerprints the fingerprints of the graphs of the previous version
+	 * @param subjectFingerprints the fingerprints of the subjects of the previous version, updated
+	 *            to those of the new version
+	 * @param current the new version of the source
+	 */
+	ModelDiff(Dataset previous, Map<String, Long> previousGraphFingerprints, LongLongHashMap subjectFingerprints, Dataset current) {
+		fingerprints = subjectFingerprints;
+		graphFingerprints = GraphPartitions.fingerprints(current);
+		model = GraphPartitions.union(current);
+
+		Map<String, Graph> previousGraphs = GraphPartitions.graphs(previous);
+		Map<String, Graph> currentGraphs = GraphPartitions.graphs(current);
+		Set<String> candidates = new LinkedHashSet<String>();
+
+		for (Map.Entry<String, Long> graph : graphFingerprints.entrySet()) {
+			if (!graph.getValue().equals(previousGraphFingerprints.get(graph.getKey()))) {
+				changedGraphs++;
+				addSubjects(currentGraphs.get(graph.getKey()), candidates);
+
+				if (previousGraphs.containsKey(graph.getKey())) {
+					addSubjects(previousGraphs.get(graph.getKey()), candidates);
+				}
+			}
+		}
+
+		for (Map.Entry<String, Graph> graph : previousGraphs.entrySet()) {
+			if (!graphFingerprints.containsKey(graph.getKey())) {
+				changedGraphs++;
+				addSubjects(graph.getValue(), candidates);
+			}
+		}
+
+		for (String uri : candidates) {
+			Resource res = model.getResource(uri);
+			List<Statement> statements = res.listProperties().toList();
+			long hash = Fingerprints.hash(uri);
+
+			if (statements.isEmpty()) {
+				removed.add(uri);
+				fingerprints.remove(hash);
+			} else {
+				long fingerprint = Fingerprints.of(statements);
+
+				if (!fingerprints.containsKey(hash) || fingerprints.get(hash, 0) != fingerprint) {
+					changed.add(res);
+					fingerprints.put(hash, fingerprint);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the fingerprints of all subjects of a model. The subjects are walked graph by graph,
+	 * see {@link SubjectWalk}, only the statements of each subject are read through the model.
+	 *
+	 * @param model the model
+	 * @return the fingerprints by the hashed subject URIs
+	 */
+	static LongLongHashMap fingerprints(Model model) {
+		LongLongHashMap fingerprints = new LongLongHashMap();
+		SubjectWalk subjects = new SubjectWalk(model);
+
+		try {
+			while (subjects.hasNext()) {
+				Resource res = subjects.next();
+				fingerprints.put(Fingerprints.hash(res.getURI()), Fingerprints.of(res.listProperties().toList()));
+			}
+		} finally {
+			subjects.close();
+		}
+
+		return fingerprints;
+	}
+
+	private static void addSubjects(Graph graph, Set<String> subjects) {
+		ResIterator iter = ModelFactory.createModelForGraph(graph).listResourcesWithProperty(null);
+
+		try {
+			while (iter.hasNext()) {
+				Resource res = iter.nextResource();
+
+				if (res.getURI() != null) {
+					subjects.add(res.getURI());
+				}
+			}
+		} finally {
+			iter.close();
+		}
+	}
+
+	/**
+	 * @return the subjects that were added or whose statements changed
+	 */
+	List<Resource> getChanged() {
+		return changed;
+	}
+
+	/**
+	 * @return the URIs of the subjects that no longer exist
+	 */
+	List<String> getRemoved() {
+		return removed;
+	}
+
+	/**
+	 * @return the fingerprints of the subjects of the new version
+	 */
+	LongLongHashMap getFingerprints() {
+		return fingerprints;
+	}
+
+	/**
+	 * @return the fingerprints of the graphs of the new version
+	 */
+	Map<String, Long> getGraphFingerprints() {
+		return graphFingerprints;
+	}
+
+	/**
+	 * @return the number of graphs that were added, changed or removed
+	 */
+	int getChangedGraphs() {
+		return changedGraphs;
+	}
+
+	/**
+	 * @return the union of all graphs of the new version
+	 */
+	Model getModel() {
+		return model;
+	}
+}
@@ -0,0 +1,400 @@
+package sf.net.plugin.rdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.jena.riot.ErrorHandlerFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RiotReader;
+import org.apache.jena.riot.lang.LabelToNode;
+import org.apache.jena.riot.lang.LangRIOT;
+import org.apache.jena.riot.system.ParserProfileBase;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.log4j.Logger;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.rdf.model.AnonId;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.sparql.core.DatasetGraph;
+import com.hp.hpl.jena.sparql.core.Prologue;
+import com.hp.hpl.jena.sparql.core.Quad;
+
+/**
+ * Loads a local N-Triples or N-Quads file on several threads. The file is split into chunks at
+ * line boundaries, each chunk is memory-mapped and parsed on its own, and the triples are added
+ * to the dataset in batches: triples to its default graph, quads to their named graphs, like
+ * {@link GraphPartitions} does.
+ * <p>
+ * Parsing scales with the threads, adding to a graph does not: in-memory graphs are not
+ * thread-safe, so the batches of a graph are added one at a time while other threads keep
+ * parsing. Indexing the triples of a graph thus bounds the speed of a load.
+ * <p>
+ * Blank node labels are scoped by the load, so a label used in several chunks is the same node,
+ * but not the same node as a label of another source. Line numbers in parse errors are relative
+ * to the chunk.
+ */
+class ParallelNTriplesLoader {
+
+	private static Logger LOGGER = Logger.getLogger(ParallelNTriplesLoader.class);
+
+	private static final long MIN_CHUNK_SIZE = 1L << 20;
+	private static final long MAX_CHUNK_SIZE = 64L << 20;
+	private static final int BATCH_SIZE = 10000;
+
+	private final int threads;
+
+	// Shared by all chunks, so the graph holds one instance of each predicate and linked resource
+	private final ConcurrentMap<Node, Node> terms = new ConcurrentHashMap<Node, Node>();
+
+	ParallelNTriplesLoader(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * @param url the URL of the source
+	 * @return true, if the source is an uncompressed local N-Triples or N-Quads file
+	 */
+	static boolean accepts(String url) {
+		if (url == null || !url.startsWith("file:") || SourceStreams.isCompressed(url)) {
+			return false;
+		}
+
+		Lang lang = SourceStreams.lang(url, null);
+
+		return Lang.NTRIPLES.equals(lang) || Lang.NQUADS.equals(lang);
+	}
+
+	/**
+	 * Loads the file into the dataset.
+	 *
+	 * @param url the URL of the file
+	 * @param dataset the dataset to add the triples and quads to
+	 * @return the number of triples read
+	 */
+	long load(String url, Dataset dataset) throws IOException {
+		File file = toFile(url);
+		Lang lang = SourceStreams.lang(url, Lang.NTRIPLES);
+		String scope = UUID.randomUUID().toString();
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, size / (threads * 4L)));
+
+			List<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+
+			for (long start = 0; start < size;) {
+				long end = start + chunkSize < size ? nextLine(channel, start + chunkSize, size) : size;
+
+				tasks.add(new ChunkTask(channel, start, end, lang, dataset, scope));
+				start = end;
+			}
+
+			LOGGER.info("Loading " + url + " in " + tasks.size() + " chunks on " + threads + " threads");
+
+			return run(tasks);
+		} finally {
+			raf.close();
+		}
+	}
+
+	private long run(List<Callable<Long>> tasks) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		long triples = 0;
+
+		try {
+			List<Future<Long>> results = new ArrayList<Future<Long>>();
+
+			for (Callable<Long> task : tasks) {
+				results.add(executor.submit(task));
+			}
+
+			for (Future<Long> result : results) {
+				triples += result.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while loading", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+
+			throw new IllegalStateException("Unable to load chunk", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		return triples;
+	}
+
+	private Node intern(Node node) {
+		if (!node.isURI()) {
+			return node;
+		}
+
+		Node interned = terms.putIfAbsent(node, node);
+
+		return interned == null ? node : interned;
+	}
+
+	/**
+	 * Returns the graph of a dataset, adding it if it does not exist yet.
+	 *
+	 * @param dataset the dataset
+	 * @param name the name of the graph or null, for the default graph
+	 * @return the graph
+	 */
+	private static Graph graph(Dataset dataset, Node name) {
+		DatasetGraph graphs = dataset.asDatasetGraph();
+
+		synchronized (dataset) {
+			if (name == null) {
+				return graphs.getDefaultGraph();
+			}
+
+			if (!graphs.containsGraph(name)) {
+				graphs.addGraph(name, ModelFactory.createDefaultModel().getGraph());
+			}
+
+			return graphs.getGraph(name);
+		}
+	}
+
+	/**
+	 * @return the position after the next line break at or behind the given position
+	 */
+	private static long nextLine(FileChannel channel, long position, long size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+		while (position < size) {
+			buffer.clear();
+
+			int read = channel.read(buffer, position);
+
+			if (read < 0) {
+				break;
+			}
+
+			for (int i = 0; i < read; i++) {
+				if (buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+
+			position += read;
+		}
+
+		return size;
+	}
+
+	private static File toFile(String url) {
+		try {
+			return new File(new URI(url));
+		} catch (URISyntaxException e) {
+			return new File(url.substring("file:".length()));
+		} catch (IllegalArgumentException e) {
+			return new File(url.substring("file:".length()));
+		}
+	}
+
+	/**
+	 * Parses one chunk of the file.
+	 */
+	private class ChunkTask implements Callable<Long> {
+
+		private final FileChannel channel;
+		private final long start;
+		private final long end;
+		private final Lang lang;
+		private final Dataset dataset;
+		private final String scope;
+
+		ChunkTask(FileChannel channel, long start, long end, Lang lang, Dataset dataset, String scope) {
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+			this.lang = lang;
+			this.dataset = dataset;
+			this.scope = scope;
+		}
+
+		public Long call() throws IOException {
+			if (end - start > Integer.MAX_VALUE) {
+				throw new IOException("Line at offset " + start + " is too long to be mapped");
+			}
+
+			InputStream in = new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+			BatchSink sink = new BatchSink(dataset, scope);
+
+			LangRIOT parser = Lang.NQUADS.equals(lang) ? RiotReader.createParserNQuads(in, sink) : RiotReader.createParserNTriples(in, sink);
+			parser.setProfile(new ParserProfileBase(new Prologue(), ErrorHandlerFactory.getDefaultErrorHandler(), LabelToNode.createUseLabelAsGiven()));
+			parser.parse();
+
+			sink.flush();
+
+			return sink.triples;
+		}
+	}
+
+	/**
+	 * Collects the triples of a chunk and adds them to the graphs of the dataset in batches.
+	 */
+	private class BatchSink extends StreamRDFBase {
+
+		private final Dataset dataset;
+		private final String scope;
+
+		// Batches by graph, the graphs of the dataset are looked up once per chunk
+		private final Map<Node, Graph> graphs = new HashMap<Node, Graph>();
+		private final Map<Graph, List<Triple>> batches = new LinkedHashMap<Graph, List<Triple>>();
+		private int batched = 0;
+
+		// N-Triples repeat the subject on every line
+		private Node parsedSubject = null;
+		private Node subject = null;
+		private long triples = 0;
+
+		BatchSink(Dataset dataset, String scope) {
+			this.dataset = dataset;
+			this.scope = scope;
+		}
+
+		@Override
+		public void triple(Triple triple) {
+			add(null, triple);
+		}
+
+		@Override
+		public void quad(Quad quad) {
+			Node name = quad.getGraph();
+			add(name == null || quad.isTriple() || quad.isDefaultGraph() ? null : name, quad.asTriple());
+		}
+
+		@Override
+		public void finish() {
+			flush();
+		}
+
+		private void add(Node name, Triple triple) {
+			if (parsedSubject == null || !parsedSubject.equals(triple.getSubject())) {
+				parsedSubject = triple.getSubject();
+				subject = node(parsedSubject);
+			}
+
+			Graph graph = graphs.get(name);
+
+			if (graph == null) {
+				graph = graph(dataset, name);
+				graphs.put(name, graph);
+			}
+
+			List<Triple> batch = batches.get(graph);
+
+			if (batch == null) {
+				batch = new ArrayList<Triple>();
+				batches.put(graph, batch);
+			}
+
+			batch.add(Triple.create(subject, intern(triple.getPredicate()), node(triple.getObject())));
+			batched++;
+			triples++;
+
+			if (batched >= BATCH_SIZE) {
+				flush();
+			}
+		}
+
+		/**
+		 * Interns a URI or scopes a blank node by the load.
+		 */
+		private Node node(Node node) {
+			if (node.isBlank()) {
+				return Node.createAnon(new AnonId(scope + "-" + node.getBlankNodeLabel()));
+			}
+
+			return intern(node);
+		}
+
+		void flush() {
+			for (Map.Entry<Graph, List<Triple>> batch : batches.entrySet()) {
+				Graph graph = batch.getKey();
+
+				// Batches of other graphs are added concurrently
+				synchronized (graph) {
+					for (Triple triple : batch.getValue()) {
+						graph.add(triple);
+					}
+				}
+			}
+
+			batches.clear();
+			batched = 0;
+		}
+	}
+
+	/**
+	 * Reads a memory-mapped chunk.
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+
+			int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+
+			return n;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package sf.net.plugin.rdf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a source stream on its own thread into a bounded queue of chunks. Wrapped around a
+ * decompressing stream, decompression and parsing run concurrently, while the queue bounds the
+ * memory held between them.
+ */
+class PipelinedInputStream extends InputStream {
+
+	// Marks the end of the source, read errors are reported after it
+	private static final byte[] EOF = new byte[0];
+
+	private final BlockingQueue<byte[]> queue;
+	private final Thread producer;
+
+	private volatile IOException error = null;
+	private volatile boolean closed = false;
+
+	private byte[] chunk = null;
+	private int pos = 0;
+
+	/**
+	 * @param source the source, closed by the reading thread when it is done
+	 * @param chunkSize the size of the chunks
+	 * @param chunks the maximum number of chunks waiting for the consumer
+	 * @param name the name of the reading thread
+	 */
+	PipelinedInputStream(final InputStream source, final int chunkSize, int chunks, String name) {
+		queue = new ArrayBlockingQueue<byte[]>(chunks);
+
+		producer = new Thread(new Runnable() {
+			public void run() {
+				try {
+					while (!closed) {
+						byte[] buffer = new byte[chunkSize];
+						int length = fill(source, buffer);
+
+						if (length <= 0) {
+							break;
+						}
+
+						queue.put(length == buffer.length ? buffer : Arrays.copyOf(buffer, length));
+					}
+				} catch (IOException e) {
+					error = e;
+				} catch (RuntimeException e) {
+					// Must not look like a regular end of the source
+					error = new IOException(e.getLocalizedMessage(), e);
+				} catch (InterruptedException e) {
+					// Closed by the consumer
+				} finally {
+					try {
+						source.close();
+					} catch (IOException e) {
+						// Nothing left to read anyway
+					}
+
+					offerEof();
+				}
+			}
+		}, name);
+
+		producer.setDaemon(true);
+		producer.start();
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!next()) {
+			return -1;
+		}
+
+		return chunk[pos++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+
+		if (!next()) {
+			return -1;
+		}
+
+		int n = Math.min(len, chunk.length - pos);
+		System.arraycopy(chunk, pos, b, off, n);
+		pos += n;
+
+		return n;
+	}
+
+	@Override
+	public int available() {
+		return chunk == null || chunk == EOF ? 0 : chunk.length - pos;
+	}
+
+	/**
+	 * Stops the reading thread and waits for it to release the source.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+		producer.interrupt();
+		queue.clear();
+
+		try {
+			producer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private boolean next() throws IOException {
+		if (chunk != null && chunk != EOF && pos < chunk.length) {
+			return true;
+		}
+
+		if (chunk != EOF) {
+			if (closed) {
+				throw new IOException("Stream closed");
+			}
+
+			try {
+				chunk = queue.take();
+				pos = 0;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the source");
+			}
+		}
+
+		if (chunk == EOF) {
+			if (error != null) {
+				throw error;
+			}
+
+			return false;
+		}
+
+		return true;
+	}
+
+	private void offerEof() {
+		try {
+			while (!closed && !queue.offer(EOF, 100, TimeUnit.MILLISECONDS)) {
+				continue;
+			}
+		} catch (InterruptedException e) {
+			// Closed by the consumer
+		}
+	}
+
+	private static int fill(InputStream in, byte[] buffer) throws IOException {
+		int length = 0;
+
+		while (length < buffer.length) {
+			int read = in.read(buffer, length, buffer.length - length);
+
+			if (read < 0) {
+				break;
+			}
+
+			length += read;
+		}
+
+		return length;
+	}
+}
@@ -0,0 +1,58 @@
+package sf.net.plugin.rdf;
+
+/**
+ * The compiled mapping of one predicate to a GIN attribute.
+ */
+class PredicateMapping {
+
+	/** Type marker for attributes typed by the datatype of their literal. */
+	static final int TYPE_FROM_DATATYPE = -1;
+
+	private final String name;
+	private final int type;
+	private final Boolean key;
+	private final boolean dropped;
+
+	PredicateMapping(String name, int type, Boolean key, boolean dropped) {
+		this.name = name;
+		this.type = type;
+		this.key = key;
+		this.dropped = dropped;
+	}
+
+	/**
+	 * @return the attribute name, uppercase and without blanks etc.
+	 */
+	String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the attribute type or {@link #TYPE_FROM_DATATYPE}
+	 */
+	int getType() {
+		return type;
+	}
+
+	/**
+	 * @param literal true, if the object of the statement is a literal
+	 * @return true, if the attribute is a key attribute
+	 */
+	boolean isKey(boolean literal) {
+		return key == null ? literal : key.booleanValue();
+	}
+
+	/**
+	 * @return true, if statements with this predicate are not mapped at all
+	 */
+	boolean isDropped() {
+		return dropped;
+	}
+
+	/**
+	 * @return true, if the attribute is the type of the resource, which is not mapped
+	 */
+	boolean isTypePredicate() {
+		return name.equalsIgnoreCase("type");
+	}
+}
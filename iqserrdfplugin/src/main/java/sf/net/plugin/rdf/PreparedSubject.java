@@ -0,0 +1,59 @@
+package sf.net.plugin.rdf;
+
+import java.util.List;
+
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.iqser.core.model.Content;
+
+/**
+ * The CPU bound part of the synchronization of one subject: its statements, its fingerprint and,
+ * if it was built ahead of time, its content. Preparing subjects needs no calls to the GIN core,
+ * so it can run on any thread.
+ */
+class PreparedSubject {
+
+	private final Resource resource;
+	private final List<Statement> statements;
+	private final long fingerprint;
+
+	private Content content = null;
+	private boolean built = false;
+
+	PreparedSubject(Resource resource, List<Statement> statements, long fingerprint) {
+		this.resource = resource;
+		this.statements = statements;
+		this.fingerprint = fingerprint;
+	}
+
+	Resource getResource() {
+		return resource;
+	}
+
+	String getUri() {
+		return resource.getURI();
+	}
+
+	List<Statement> getStatements() {
+		return statements;
+	}
+
+	long getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Builds the content, unless it was already built.
+	 *
+	 * @param builder the content builder
+	 * @return the content or null, if the subject is a RDF sequence
+	 */
+	Content getContent(ContentBuilder builder) {
+		if (!built) {
+			content = builder.build(resource, statements.iterator());
+			built = true;
+		}
+
+		return content;
+	}
+}
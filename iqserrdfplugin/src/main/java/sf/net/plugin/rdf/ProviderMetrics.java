@@ -0,0 +1,255 @@
+package sf.net.plugin.rdf;
+
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Collects the metrics of a RDF content provider and exposes them over JMX.
+ */
+public class ProviderMetrics implements ProviderMetricsMXBean {
+
+	private static Logger LOGGER = Logger.getLogger(ProviderMetrics.class);
+
+	static final String INIT = "init";
+	static final String SYNCHRONIZATION = "doSynchronization";
+	static final String HOUSEKEEPING = "doHousekeeping";
+	static final String GET_CONTENT = "getContent";
+	static final String GET_BINARY_DATA = "getBinaryData";
+
+	private final Map<String, LatencyHistogram> latencies = new LinkedHashMap<String, LatencyHistogram>();
+
+	private final AtomicLong triplesParsed = new AtomicLong();
+	private final AtomicLong resourcesSeen = new AtomicLong();
+	private final AtomicLong contentsAdded = new AtomicLong();
+	private final AtomicLong contentsUpdated = new AtomicLong();
+	private final AtomicLong resourcesSkipped = new AtomicLong();
+	private final AtomicLong contentsRemoved = new AtomicLong();
+	private final AtomicLong syncLapsCompleted = new AtomicLong();
+
+	private volatile double triplesParsedPerSecond = 0;
+	private volatile long modelTriples = 0;
+	private volatile long modelSubjects = 0;
+	private volatile long lastSyncSubjects = 0;
+	private volatile long lastSyncDurationMillis = 0;
+	private volatile String lastSyncOutcome = null;
+	private volatile Date lastSyncEnd = null;
+	private volatile Date lastSyncLapEnd = null;
+
+	private volatile BinaryDataCache binaryDataCache = null;
+
+	private ObjectName name = null;
+
+	ProviderMetrics() {
+		for (String operation : new String[] { INIT, SYNCHRONIZATION, HOUSEKEEPING, GET_CONTENT, GET_BINARY_DATA }) {
+			latencies.put(operation, new LatencyHistogram());
+		}
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server, replacing those of an earlier instance
+	 * of the provider. Failures are logged only, metrics must never break the provider.
+	 *
+	 * @param provider the name of the provider
+	 */
+	void register(String provider) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName("sf.net.plugin.rdf:type=RDFContentProvider,name=" + ObjectName.quote(String.valueOf(provider)));
+
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+
+			server.registerMBean(this, objectName);
+			name = objectName;
+		} catch (JMException e) {
+			LOGGER.warn("Unable to register metrics - " + e.getLocalizedMessage());
+		}
+	}
+
+	void unregister() {
+		if (name == null) {
+			return;
+		}
+
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		} catch (JMException e) {
+			LOGGER.warn("Unable to unregister metrics - " + e.getLocalizedMessage());
+		}
+
+		name = null;
+	}
+
+	LatencyHistogram latency(String operation) {
+		return latencies.get(operation);
+	}
+
+	/**
+	 * Records a completed load or streaming pass of the source.
+	 */
+	void parsed(long triples, long nanos) {
+		triplesParsed.addAndGet(triples);
+		modelTriples = triples;
+		triplesParsedPerSecond = nanos > 0 ? triples * 1e9 / nanos : 0;
+	}
+
+	void seen() {
+		resourcesSeen.incrementAndGet();
+	}
+
+	void added() {
+		contentsAdded.incrementAndGet();
+	}
+
+	void updated() {
+		contentsUpdated.incrementAndGet();
+	}
+
+	void skipped() {
+		resourcesSkipped.incrementAndGet();
+	}
+
+	void removed() {
+		contentsRemoved.incrementAndGet();
+	}
+
+	/**
+	 * Records the end of a synchronization.
+	 *
+	 * @param subjects the number of subjects seen
+	 * @param millis the duration
+	 * @param failure the reason of a failure or null
+	 */
+	void synchronizationFinished(long subjects, long millis, String failure) {
+		lastSyncSubjects = subjects;
+		lastSyncDurationMillis = millis;
+		lastSyncOutcome = failure == null ? "OK" : "FAILED: " + failure;
+		lastSyncEnd = new Date();
+	}
+
+	/**
+	 * Records that the slices of a synchronization have walked the whole model.
+	 */
+	void lapCompleted(long subjects) {
+		syncLapsCompleted.incrementAndGet();
+		lastSyncLapEnd = new Date();
+		modelWalked(subjects);
+	}
+
+	/**
+	 * Records the number of subjects of a synchronization that walked the whole model.
+	 */
+	void modelWalked(long subjects) {
+		modelSubjects = subjects;
+	}
+
+	void setBinaryDataCache(BinaryDataCache binaryDataCache) {
+		this.binaryDataCache = binaryDataCache;
+	}
+
+	public Map<String, LatencySnapshot> getLatencies() {
+		Map<String, LatencySnapshot> snapshots = new LinkedHashMap<String, LatencySnapshot>();
+
+		for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+			snapshots.put(entry.getKey(), entry.getValue().snapshot());
+		}
+
+		return snapshots;
+	}
+
+	public long getTriplesParsed() {
+		return triplesParsed.get();
+	}
+
+	public double getTriplesParsedPerSecond() {
+		return triplesParsedPerSecond;
+	}
+
+	public long getResourcesSeen() {
+		return resourcesSeen.get();
+	}
+
+	public long getContentsAdded() {
+		return contentsAdded.get();
+	}
+
+	public long getContentsUpdated() {
+		return contentsUpdated.get();
+	}
+
+	public long getResourcesSkipped() {
+		return resourcesSkipped.get();
+	}
+
+	public long getContentsRemoved() {
+		return contentsRemoved.get();
+	}
+
+	public long getModelTriples() {
+		return modelTriples;
+	}
+
+	public long getModelSubjects() {
+		return modelSubjects;
+	}
+
+	public long getLastSyncSubjects() {
+		return lastSyncSubjects;
+	}
+
+	public long getLastSyncDurationMillis() {
+		return lastSyncDurationMillis;
+	}
+
+	public String getLastSyncOutcome() {
+		return lastSyncOutcome;
+	}
+
+	public Date getLastSyncEnd() {
+		return lastSyncEnd == null ? null : new Date(lastSyncEnd.getTime());
+	}
+
+	public long getSyncLapsCompleted() {
+		return syncLapsCompleted.get();
+	}
+
+	public Date getLastSyncLapEnd() {
+		return lastSyncLapEnd == null ? null : new Date(lastSyncLapEnd.getTime());
+	}
+
+	public long getBinaryCacheHits() {
+		return binaryDataCache == null ? 0 : binaryDataCache.getHits();
+	}
+
+	public long getBinaryCacheMisses() {
+		return binaryDataCache == null ? 0 : binaryDataCache.getMisses();
+	}
+
+	public long getBinaryCacheEvictions() {
+		return binaryDataCache == null ? 0 : binaryDataCache.getEvictions();
+	}
+
+	public void reset() {
+		for (LatencyHistogram histogram : latencies.values()) {
+			histogram.reset();
+		}
+
+		triplesParsed.set(0);
+		resourcesSeen.set(0);
+		contentsAdded.set(0);
+		contentsUpdated.set(0);
+		resourcesSkipped.set(0);
+		contentsRemoved.set(0);
+		syncLapsCompleted.set(0);
+	}
+}
@@ -0,0 +1,87 @@
+package sf.net.plugin.rdf;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Metrics of a RDF content provider, registered as
+ * <code>sf.net.plugin.rdf:type=RDFContentProvider,name=&lt;provider name&gt;</code>.
+ */
+public interface ProviderMetricsMXBean {
+
+	/**
+	 * @return the latencies of init, doSynchronization, doHousekeeping, getContent and getBinaryData
+	 */
+	Map<String, LatencySnapshot> getLatencies();
+
+	/**
+	 * @return the number of triples read from the source, on init or by streaming synchronizations
+	 */
+	long getTriplesParsed();
+
+	/**
+	 * @return the parse rate of the last load or streaming pass
+	 */
+	double getTriplesParsedPerSecond();
+
+	long getResourcesSeen();
+
+	long getContentsAdded();
+
+	long getContentsUpdated();
+
+	/**
+	 * @return the number of resources that were neither added nor updated, as they were unchanged
+	 */
+	long getResourcesSkipped();
+
+	long getContentsRemoved();
+
+	/**
+	 * @return the number of triples of the last load or streaming pass; the graphs of a union are
+	 *         counted separately, a TDB dataset is not counted
+	 */
+	long getModelTriples();
+
+	/**
+	 * @return the number of subjects of the model, counted by the last synchronization or lap that
+	 *         walked the whole model
+	 */
+	long getModelSubjects();
+
+	/**
+	 * @return the number of subjects seen by the last synchronization
+	 */
+	long getLastSyncSubjects();
+
+	long getLastSyncDurationMillis();
+
+	/**
+	 * @return "OK", "FAILED" with the reason or null, if no synchronization has finished yet
+	 */
+	String getLastSyncOutcome();
+
+	Date getLastSyncEnd();
+
+	/**
+	 * @return the number of completed walks over the whole model by sliced or checkpointed
+	 *         synchronizations
+	 */
+	long getSyncLapsCompleted();
+
+	/**
+	 * @return the end of the last completed walk over the whole model or null
+	 */
+	Date getLastSyncLapEnd();
+
+	long getBinaryCacheHits();
+
+	long getBinaryCacheMisses();
+
+	long getBinaryCacheEvictions();
+
+	/**
+	 * Resets the latencies and counters.
+	 */
+	void reset();
+}
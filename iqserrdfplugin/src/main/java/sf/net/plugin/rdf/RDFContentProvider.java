@@ -1,28 +1,42 @@
 package sf.net.plugin.rdf;
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.jena.riot.system.StreamRDFLib;
 import org.apache.log4j.Logger;
 
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.query.DatasetFactory;
 import com.hp.hpl.jena.query.Query;
-import com.hp.hpl.jena.query.QueryExecution;
-import com.hp.hpl.jena.query.QueryExecutionFactory;
 import com.hp.hpl.jena.query.QueryFactory;
 import com.hp.hpl.jena.query.ResultSet;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
-import com.hp.hpl.jena.rdf.model.Property;
-import com.hp.hpl.jena.rdf.model.RDFNode;
 import com.hp.hpl.jena.rdf.model.ResIterator;
 import com.hp.hpl.jena.rdf.model.Resource;
-import com.hp.hpl.jena.rdf.model.SimpleSelector;
 import com.hp.hpl.jena.rdf.model.Statement;
-import com.hp.hpl.jena.rdf.model.StmtIterator;
+import com.hp.hpl.jena.shared.Lock;
 import com.iqser.core.exception.IQserException;
-import com.iqser.core.model.Attribute;
 import com.iqser.core.model.Content;
 import com.iqser.core.model.Parameter;
 import com.iqser.core.plugin.provider.AbstractContentProvider;
@@ -32,142 +46,1001 @@ public class RDFContentProvider extends AbstractContentProvider {
 	private static Logger LOGGER = Logger.getLogger(RDFContentProvider.class);
 	
 	private Model model = null;
+	private Dataset dataset = null;
 	private long  modificationDate = -1;
 
 	private String CONTENT_TYPE; //mandatory
-	
-	private static final String ATTRIBUTE_NAME = "NAME";
-	private static final String ATTRIBUTE_RDFNAMESPACE = "RDFNAMESPACE";
+
+	private static final String INGEST_STREAM = "stream";
+	private static final String STORAGE_TDB = "tdb";
+	private static final String STORAGE_COMPACT = "compact";
+	private static final String HOUSEKEEPING_BLOOM = "bloom";
+	private static final String LOAD_ASYNC = "async";
+
+	private static final int DEFAULT_SPARQL_PAGE_SIZE = 10000;
+	private static final int DEFAULT_LOAD_PARALLELISM = 4;
+	private static final int DEFAULT_CHECKPOINT_INTERVAL = 10000;
+	private static final int DEFAULT_LOAD_QUEUE_SIZE = 10000;
+	private static final int DEFAULT_SPARQL_CONNECT_TIMEOUT = 30000;
+	private static final int DEFAULT_SPARQL_READ_TIMEOUT = 300000;
+	private static final int DEFAULT_LOAD_WAIT_MILLIS = 30000;
+	private static final int PARALLEL_CHUNK_SIZE = 256;
+
+	private ContentBuilder contentBuilder = null;
+
+	// Source of the subjects, if they are streamed instead of being loaded into the model
+	private StreamSource streamSource = null;
+
+	// Fingerprints of the subjects passed to the GIN core, null if fingerprinting is disabled
+	private FingerprintStore fingerprints = null;
+
+	// Passes single contents to the GIN core
+	private final ContentBatcher.Submitter submitter = new ContentBatcher.Submitter() {
+		public void submit(Content content, boolean update, long fingerprint) throws IQserException {
+			if (update) {
+				updateContent(content);
+				metrics.updated();
+			} else {
+				addContent(content);
+				metrics.added();
+			}
+
+			// Only contents accepted by the core are remembered as unchanged
+			recordFingerprint(content.getContentUrl(), fingerprint);
+		}
+	};
+
+	// Existing contents of the current synchronization, loaded on first use
+	private ExistingContentIndex existingContents = null;
+
+	// Collects contents for the GIN core, null if batching is disabled
+	private ContentBatcher batcher = null;
+
+	// Metrics of the provider, exposed over JMX
+	private final ProviderMetrics metrics = new ProviderMetrics();
+
+	// Writes the binary data of the contents
+	private ResourceSerializer serializer = null;
+
+	// Binary data of recently requested contents, null if caching is disabled
+	private BinaryDataCache binaryDataCache = null;
+
+	// Checks the source for changes between synchronizations, null if refreshing is disabled
+	private SourceMonitor sourceMonitor = null;
+
+	// The graphs of a refreshed source and their fingerprints, to compare it with a new version
+	private Dataset sourceGraphs = null;
+	private Map<String, Long> graphFingerprints = null;
+
+	// Fingerprints of the subjects of the model, to compare it with a refreshed version
+	private LongLongHashMap subjectFingerprints = null;
+
+	// Set when a refreshed source changed, housekeeping of an unchanged source is skipped
+	private boolean housekeepingPending = true;
+
+	// Position of an interrupted or sliced synchronization of the model
+	private SyncCheckpoint checkpoint = null;
+
+	// Set while the slices of a synchronization have not yet walked the whole model
+	private boolean lapInProgress = false;
+
+	// The subjects of the lap in progress, kept open between its slices
+	private SubjectWalk lapSubjects = null;
+
+	// Set once all subjects of the model were synchronized, later ones only push changes
+	private boolean fullySynchronized = false;
+
+	// Hashed URIs of the subjects of the last complete streaming pass, null until it has finished
+	private LongHashSet streamedSubjects = null;
+
+	// Hashed URIs of the subjects split into several runs of the stream by the last pass
+	private LongHashSet splitSubjects = new LongHashSet();
+
+	// Loads the model in the background, null if the model was loaded during init
+	private AsyncModelLoader loader = null;
+
+	// Hashed URIs of the subjects synchronized while the model is loaded, to tell repeated subjects
+	private LongHashSet loadingSubjects = null;
 
 	@Override
 	public void init() {
 		LOGGER.debug("Start init()");
-		
+
+		long start = System.nanoTime();
+
 		CONTENT_TYPE = getInitParams().getProperty("content-type");
-		
-		if (getInitParams().getProperty("sparqlQuery") != null) {
+		contentBuilder = new ContentBuilder(getName(), CONTENT_TYPE, MappingPlan.load(getInitParams().getProperty("mappingFile")));
+
+		serializer = new ResourceSerializer(getInitParams().getProperty("binaryFormat"), getInitParams().getProperty("binaryCompression"));
+
+		if (getIntParam("binaryCacheBytes", 0) > 0) {
+			binaryDataCache = new BinaryDataCache(getIntParam("binaryCacheBytes", 0));
+		}
+
+		if (getInitParams().getProperty("fingerprintFile") != null) {
+			fingerprints = FingerprintStore.open(new File(getInitParams().getProperty("fingerprintFile")));
+		}
+
+		if (getInitParams().getProperty("checkpointFile") != null) {
+			checkpoint = new SyncCheckpoint(new File(getInitParams().getProperty("checkpointFile")),
+					getInitParams().getProperty("modelURL"), getIntParam("checkpointInterval", DEFAULT_CHECKPOINT_INTERVAL));
+		} else if (getIntParam("maxSyncMillis", 0) > 0 || getIntParam("maxSyncResources", 0) > 0) {
+			// Slices continue where the previous one stopped, the position is kept in memory only
+			checkpoint = new SyncCheckpoint(null, getInitParams().getProperty("modelURL"), DEFAULT_CHECKPOINT_INTERVAL);
+		}
+
+		if (getIntParam("batchSize", 1) > 1) {
+			batcher = new ContentBatcher(submitter, getIntParam("batchSize", 1), getIntParam("batchFlushMillis", 0));
+		}
+
+		boolean streaming = INGEST_STREAM.equalsIgnoreCase(getInitParams().getProperty("ingest"));
+		boolean compact = STORAGE_COMPACT.equalsIgnoreCase(getInitParams().getProperty("storage"));
+		boolean async = LOAD_ASYNC.equalsIgnoreCase(getInitParams().getProperty("load"));
+		HttpTimeouts timeouts = new HttpTimeouts(getIntParam("sparqlConnectTimeout", DEFAULT_SPARQL_CONNECT_TIMEOUT),
+				getIntParam("sparqlReadTimeout", DEFAULT_SPARQL_READ_TIMEOUT));
+
+		if (getInitParams().getProperty("sparqlQuery") != null && getInitParams().getProperty("sparqlPageSize") != null) {
+			// Using a SPARQL service, the result is fetched page by page on each synchronization
+			streamSource = new SparqlPagedSource(getInitParams().getProperty("modelURL"),
+					getInitParams().getProperty("sparqlQuery"),
+					getIntParam("sparqlPageSize", DEFAULT_SPARQL_PAGE_SIZE),
+					getIntParam("sparqlMaxPagesInFlight", 1), timeouts);
+			modificationDate = System.currentTimeMillis();
+		} else if (getInitParams().getProperty("sparqlQuery") != null) {
 			// Using a SPARQL service
 			Query query = QueryFactory.create(getInitParams().getProperty("sparqlQuery"));
-			QueryExecution execution = QueryExecutionFactory.sparqlService(getInitParams().getProperty("modelURL"), query);
-			ResultSet result = execution.execSelect();
 			
-			model = result.getResourceModel();
+			if (SparqlHttp.isGraphQuery(query) && streaming) {
+				// The triples of the query are streamed into the synchronization
+				streamSource = new SparqlConstructSource(getInitParams().getProperty("modelURL"), getInitParams().getProperty("sparqlQuery"), timeouts);
+			} else if (SparqlHttp.isGraphQuery(query) && async) {
+				// The triples of the query are parsed into the model in the background
+				loadAsync(query, timeouts);
+			} else if (SparqlHttp.isGraphQuery(query)) {
+				// The triples of the query are parsed straight into the model
+				model = ModelFactory.createDefaultModel();
+				SparqlHttp.execute(getInitParams().getProperty("modelURL"), query, StreamRDFLib.graph(model.getGraph()), timeouts);
+			} else if (streaming) {
+				streamSource = new SparqlPagedSource(getInitParams().getProperty("modelURL"),
+						getInitParams().getProperty("sparqlQuery"), DEFAULT_SPARQL_PAGE_SIZE,
+						getIntParam("sparqlMaxPagesInFlight", 1), timeouts);
+			} else {
+				ResultSet result = SparqlHttp.select(getInitParams().getProperty("modelURL"), query, timeouts);
+				
+				model = result.getResourceModel();
+			}
+			
 			modificationDate = System.currentTimeMillis();
+		} else if (streaming) {
+			// The source is parsed on each synchronization, no model is kept in memory
+			streamSource = new FileStreamSource(getInitParams().getProperty("modelURL"));
+			LOGGER.info("Streaming " + getInitParams().getProperty("modelURL") + " subject by subject");
+		} else if (STORAGE_TDB.equalsIgnoreCase(getInitParams().getProperty("storage"))) {
+			// Using a persistent TDB dataset, loaded once and reopened on later starts
+			String storageDir = getInitParams().getProperty("storageDir");
+			
+			if (storageDir == null) {
+				storageDir = new File(System.getProperty("java.io.tmpdir"), "rdf-" + getName()).getAbsolutePath();
+				LOGGER.warn("No storageDir given - using " + storageDir);
+			}
+			
+			dataset = TdbStore.open(storageDir, getInitParams().getProperty("modelURL"));
+			model = dataset.getDefaultModel();
+		} else if (getInitParams().getProperty("modelURLs") != null) {
+			// Using several RDF resources, loaded concurrently into a union of their graphs
+			List<String> urls = new ArrayList<String>();
+			urls.add(getInitParams().getProperty("modelURL"));
+			urls.addAll(UnionLoader.split(getInitParams().getProperty("modelURLs")));
+
+			model = new UnionLoader(urls, getIntParam("loadParallelism", DEFAULT_LOAD_PARALLELISM), getLoadThreads()).load();
+		} else if ("true".equalsIgnoreCase(getInitParams().getProperty("refreshSource"))) {
+			// Using a RDF resource that is checked for changes on each synchronization
+			sourceMonitor = new SourceMonitor(getInitParams().getProperty("modelURL"));
+
+			try {
+				sourceGraphs = sourceMonitor.load();
+			} catch (IOException e) {
+				throw new IllegalStateException("Unable to load " + getInitParams().getProperty("modelURL") + " - " + e.getLocalizedMessage(), e);
+			}
+
+			model = GraphPartitions.union(sourceGraphs);
+			graphFingerprints = GraphPartitions.fingerprints(sourceGraphs);
+			subjectFingerprints = ModelDiff.fingerprints(model);
+		} else if (getLoadThreads() > 1 && ParallelNTriplesLoader.accepts(getInitParams().getProperty("modelURL"))) {
+			// Using a local N-Triples or N-Quads file, parsed in chunks on several threads
+			Dataset loaded = DatasetFactory.createMem();
+
+			try {
+				new ParallelNTriplesLoader(getLoadThreads()).load(getInitParams().getProperty("modelURL"), loaded);
+				model = GraphPartitions.union(loaded);
+			} catch (IOException e) {
+				throw new IllegalStateException("Unable to load " + getInitParams().getProperty("modelURL") + " - " + e.getLocalizedMessage(), e);
+			}
+		} else if (compact) {
+			// Using a remote RDF resource, parsed straight into a compact read-only graph
+			CompactGraph.Builder builder = new CompactGraph.Builder();
+			SourceStreams.parse(builder, getInitParams().getProperty("modelURL"));
+			model = ModelFactory.createModelForGraph(builder.build());
+		} else if (async) {
+			// Using a RDF resource, parsed into the model in the background
+			loadAsync(null, HttpTimeouts.NONE);
 		} else {
-			// Using a remote RDF resource
-			model = ModelFactory.createDefaultModel();
-			model.read(getInitParams().getProperty("modelURL"));
+			// Using a remote RDF resource, the named graphs of TriG and N-Quads are combined
+			model = GraphPartitions.union(GraphPartitions.load(getInitParams().getProperty("modelURL")));
+		}
+
+		if (compact && sourceMonitor != null) {
+			LOGGER.warn("storage=compact is not used with refreshSource, the model is replaced on changes");
+		} else if (compact && loader != null) {
+			// The loader keeps adding to the model, it cannot be copied yet
+			LOGGER.warn("storage=compact is not used with load=async, the model is loaded in the background");
+		} else if (compact && model != null && !(model.getGraph() instanceof CompactGraph)) {
+			// Loaded into a general purpose graph first, e.g. on several threads
+			Model loaded = model;
+			model = ModelFactory.createModelForGraph(CompactGraph.copyOf(loaded.getGraph()));
+			loaded.close();
+		}
+
+		if (async && loader == null && streamSource == null) {
+			LOGGER.warn("load=async is not supported with this source, it was loaded during init");
 		}
+
+		if (model != null && loader == null && dataset == null) {
+			metrics.parsed(countTriples(model.getGraph()), System.nanoTime() - start);
+		}
+
+		metrics.setBinaryDataCache(binaryDataCache);
+
+		if (!"false".equalsIgnoreCase(getInitParams().getProperty("jmx"))) {
+			metrics.register(getName());
+		}
+
+		metrics.latency(ProviderMetrics.INIT).recordSince(start);
 		
 		LOGGER.debug("Finish init()");
 	}
 
+	/**
+	 * Counts the triples of a loaded graph without scanning it. The graphs of a union are counted
+	 * one by one, so triples contained in several graphs are counted more than once.
+	 */
+	private static long countTriples(Graph graph) {
+		long triples = 0;
+
+		for (Graph part : GraphPartitions.parts(graph)) {
+			triples += part.size();
+		}
+
+		return triples;
+	}
+
+	/**
+	 * Starts loading the model in the background. The subjects are synchronized by the first
+	 * synchronization while they are loaded.
+	 *
+	 * @param query the graph query or null, if the RDF resource is read directly
+	 * @param timeouts the timeouts of the query
+	 */
+	private void loadAsync(Query query, HttpTimeouts timeouts) {
+		model = ModelFactory.createDefaultModel();
+		loader = new AsyncModelLoader(getInitParams().getProperty("modelURL"), query, timeouts, model,
+				getIntParam("loadQueueSize", DEFAULT_LOAD_QUEUE_SIZE), metrics, "rdf-load-" + getName());
+		loader.start();
+
+		LOGGER.info("Loading " + getInitParams().getProperty("modelURL") + " in the background");
+	}
+
 	@Override
 	public void destroy() {
-		model.close();
+		if (loader != null) {
+			loader.close();
+		}
+
+		closeLap();
+
+		if (batcher != null) {
+			batcher.flush();
+		}
+
+		if (streamSource != null) {
+			streamSource.close();
+		}
+		
+		if (model != null) {
+			model.close();
+		}
+		
+		if (dataset != null) {
+			dataset.close();
+		}
+
+		if (sourceGraphs != null) {
+			sourceGraphs.close();
+		}
+		
+		if (fingerprints != null) {
+			fingerprints.save();
+		}
+
+		if (binaryDataCache != null) {
+			LOGGER.info("Binary data cache: " + binaryDataCache);
+			binaryDataCache.clear();
+		}
+
+		metrics.unregister();
 	}
 
 	@Override
 	public void doSynchronization() {
 		LOGGER.debug("Start doSynchronization()");
-		
+
+		long start = System.nanoTime();
+		long seen = metrics.getResourcesSeen();
+		String failure = null;
+		boolean complete = true;
+		boolean walked = false;
+
+		// The slices of a lap share the existing contents, later slices only visit other subjects
+		if (!lapInProgress) {
+			existingContents = null;
+			closeLap();
+		}
+
+		lapInProgress = false;
+
+		// A failed synchronization is followed by a full one, as changes may not have been pushed
+		boolean refresh = sourceMonitor != null && fullySynchronized;
+		fullySynchronized = false;
+
 		try {
-			ResIterator iter = model.listResourcesWithProperty(null);
-			
-			while (iter.hasNext()) {
-				Resource res = iter.nextResource();
-				String uri = res.getURI();
-				
-				if (this.isExistingContent(uri)) {
-					Content c = getExistingContent(uri);
-					
-					if (modificationDate > c.getModificationDate()) {
-						this.updateContent(getContent(uri));
-					}
-				} else {
-					Content c = getContent(uri);
-					if (c != null) {
-						this.addContent(c);
-					}
+			if (streamSource != null) {
+				synchronizeStream();
+				walked = true;
+			} else if (loader != null && !loader.isDrained()) {
+				synchronizeLoading();
+			} else if (refresh) {
+				synchronizeRefresh();
+			} else if (checkpoint != null) {
+				complete = synchronizeCheckpointed(new SyncBudget(getIntParam("maxSyncMillis", 0), getIntParam("maxSyncResources", 0)));
+			} else if (getSyncThreads() > 1) {
+				synchronizeParallel(model.listResourcesWithProperty(null), getSyncThreads(),
+						!"false".equalsIgnoreCase(getInitParams().getProperty("syncOrdered")), SyncBudget.unlimited());
+				walked = true;
+			} else {
+				ResIterator iter = model.listResourcesWithProperty(null);
+
+				while (iter.hasNext()) {
+					Resource res = iter.nextResource();
+					synchronize(prepare(res, res.listProperties().toList()));
 				}
+
+				walked = true;
+			}
+
+			fullySynchronized = complete;
+			lapInProgress = !complete;
+
+			if (walked) {
+				metrics.modelWalked(metrics.getResourcesSeen() - seen);
 			}
 		} catch (IQserException e) {
 			LOGGER.error("Unable to perform synchronization - " + e.getLocalizedMessage());
+			failure = e.getLocalizedMessage();
+		} catch (RuntimeException e) {
+			metrics.synchronizationFinished(metrics.getResourcesSeen() - seen, (System.nanoTime() - start) / 1000000, e.toString());
+			throw e;
 		}
-		
+
+		if (batcher != null) {
+			batcher.flush();
+		}
+
+		if (fingerprints != null) {
+			fingerprints.save();
+		}
+
+		if (!lapInProgress) {
+			existingContents = null;
+			closeLap();
+		}
+
+		if (binaryDataCache != null) {
+			LOGGER.debug("Binary data cache: " + binaryDataCache);
+		}
+
+		metrics.synchronizationFinished(metrics.getResourcesSeen() - seen, (System.nanoTime() - start) / 1000000, failure);
+		metrics.latency(ProviderMetrics.SYNCHRONIZATION).recordSince(start);
+
 		LOGGER.debug("Finished doSynchronization()");
 	}
 
+	/**
+	 * Streams the source and synchronizes each subject as soon as all of its consecutive triples
+	 * have been read. Subjects that appear in several runs of the source are synchronized with all
+	 * of their triples after the pass.
+	 */
+	private void synchronizeStream() throws IQserException {
+		final LongHashSet subjects = new LongHashSet();
+		final LongHashSet split = new LongHashSet();
+		final List<String> deferred = new ArrayList<String>();
+		final AtomicLong triplesRead = new AtomicLong();
+		long start = System.nanoTime();
+
+		streamSource.stream(new SubjectHandler() {
+			public void handle(Node subject, List<Triple> triples) throws IQserException {
+				triplesRead.addAndGet(triples.size());
+
+				Resource res = contentBuilder.asResource(subject);
+
+				if (res.getURI() != null) {
+					long hash = Fingerprints.hash(res.getURI());
+
+					// A run of a split subject holds only some of its triples, it is synchronized
+					// after the pass, also if it was split in the last pass
+					if (!subjects.add(hash) || splitSubjects.contains(hash)) {
+						if (split.add(hash)) {
+							deferred.add(res.getURI());
+						}
+
+						return;
+					}
+				}
+
+				synchronize(prepare(res, contentBuilder.asStatements(triples)));
+			}
+		});
+
+		if (!deferred.isEmpty()) {
+			LOGGER.warn(deferred.size() + " subjects are split into several runs of the source, they are looked up after the pass");
+		}
+
+		for (String uri : deferred) {
+			Resource res = contentBuilder.asResource(Node.createURI(uri));
+			synchronize(prepare(res, contentBuilder.asStatements(streamSource.describe(uri))));
+		}
+
+		streamedSubjects = subjects;
+		splitSubjects = split;
+		metrics.parsed(triplesRead.get(), System.nanoTime() - start);
+	}
+
+	/**
+	 * Synchronizes the subjects of a model that is still being loaded, each as soon as the loader
+	 * has added all of its consecutive triples. A subject that appears again later in the source
+	 * is updated with all of its triples loaded so far.
+	 */
+	private void synchronizeLoading() throws IQserException {
+		if (loadingSubjects == null) {
+			loadingSubjects = new LongHashSet();
+		}
+
+		try {
+			Node node;
+
+			while ((node = loader.take()) != null) {
+				PreparedSubject subject;
+
+				model.enterCriticalSection(Lock.READ);
+
+				try {
+					Resource res = model.wrapAsResource(node);
+					subject = prepare(res, res.listProperties().toList());
+					subject.getContent(contentBuilder);
+				} finally {
+					model.leaveCriticalSection();
+				}
+
+				if (subject.getUri() == null || loadingSubjects.add(Fingerprints.hash(subject.getUri()))) {
+					synchronize(subject);
+					continue;
+				}
+
+				// Passed to the core earlier in this pass, without the triples read since
+				Content content = subject.getContent(contentBuilder);
+
+				metrics.seen();
+
+				if (binaryDataCache != null) {
+					binaryDataCache.invalidate(subject.getUri());
+				}
+
+				if (content != null) {
+					submit(content, true, subject.getFingerprint());
+				} else {
+					metrics.skipped();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while loading", e);
+		}
+
+		loadingSubjects = null;
+	}
+
+	/**
+	 * Reloads the source, if it changed, and pushes only the subjects that were added, changed or
+	 * removed since the previous version. An unchanged source costs a single check.
+	 */
+	private void synchronizeRefresh() throws IQserException {
+		long start = System.nanoTime();
+		Dataset current;
+
+		try {
+			current = sourceMonitor.loadIfChanged();
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to refresh " + getInitParams().getProperty("modelURL") + " - " + e.getLocalizedMessage(), e);
+		}
+
+		if (current == null) {
+			LOGGER.debug("Source unchanged");
+			return;
+		}
+
+		metrics.parsed(GraphPartitions.size(current), System.nanoTime() - start);
+
+		ModelDiff diff = new ModelDiff(sourceGraphs, graphFingerprints, subjectFingerprints, current);
+		Model previous = model;
+		Dataset previousGraphs = sourceGraphs;
+
+		model = diff.getModel();
+		sourceGraphs = current;
+		graphFingerprints = diff.getGraphFingerprints();
+		subjectFingerprints = diff.getFingerprints();
+		modificationDate = System.currentTimeMillis();
+		housekeepingPending = true;
+
+		previous.enterCriticalSection(Lock.WRITE);
+
+		try {
+			previous.close();
+			previousGraphs.close();
+		} finally {
+			previous.leaveCriticalSection();
+		}
+
+		LOGGER.info("Source changed - " + diff.getChangedGraphs() + " graphs changed, " + diff.getChanged().size()
+				+ " subjects added or changed, " + diff.getRemoved().size() + " removed");
+
+		for (Resource res : diff.getChanged()) {
+			PreparedSubject subject = prepare(res, res.listProperties().toList());
+			Content content = subject.getContent(contentBuilder);
+
+			metrics.seen();
+
+			if (binaryDataCache != null) {
+				binaryDataCache.invalidate(subject.getUri());
+			}
+
+			if (content != null) {
+				submit(content, getExistingContentIndex().contains(subject.getUri()), subject.getFingerprint());
+			} else {
+				metrics.skipped();
+				recordFingerprint(subject.getUri(), subject.getFingerprint());
+			}
+		}
+
+		for (String url : diff.getRemoved()) {
+			remove(url);
+		}
+	}
+
+	/**
+	 * Synchronizes the subjects of the model in the order of its storage and records them in the
+	 * checkpoint, so an interrupted synchronization passes over the subjects saved before instead
+	 * of starting over, even if the reloaded model stores them in another order. Subjects without
+	 * URI have no content and are left out.
+	 * <p>
+	 * A synchronization stops once its budget is used up and the next one continues behind it.
+	 * The walk over all subjects is called a lap; it is kept open between the slices of the lap,
+	 * so a slice costs only the subjects it synchronizes.
+	 *
+	 * @param budget the budget of this synchronization
+	 * @return true, if the lap is complete
+	 */
+	private boolean synchronizeCheckpointed(SyncBudget budget) throws IQserException {
+		SubjectWalk subjects = lapSubjects;
+		boolean complete = false;
+		boolean stopped = false;
+
+		if (subjects == null) {
+			if (checkpoint.getProcessed() > 0) {
+				LOGGER.debug("Continuing synchronization after " + checkpoint.getProcessed() + " subjects at " + checkpoint.getCursor());
+			}
+
+			subjects = new SubjectWalk(model, checkpoint);
+		}
+
+		lapSubjects = null;
+
+		try {
+			if (getSyncThreads() > 1) {
+				subjects.pushBack(synchronizeParallel(subjects, getSyncThreads(), true, budget));
+				complete = !subjects.hasNext();
+			} else {
+				while (subjects.hasNext()) {
+					Resource res = subjects.next();
+
+					synchronize(prepare(res, res.listProperties().toList()));
+					advance(res.getURI());
+
+					if (budget.spend()) {
+						break;
+					}
+				}
+
+				complete = !subjects.hasNext();
+			}
+
+			stopped = true;
+		} finally {
+			if (stopped && !complete) {
+				lapSubjects = subjects;
+			} else if (lapSubjects != subjects) {
+				subjects.close();
+			}
+
+			if (complete) {
+				LOGGER.info("Synchronization lap completed after " + checkpoint.getProcessed() + " subjects");
+				metrics.lapCompleted(checkpoint.getProcessed());
+				checkpoint.complete();
+			} else {
+				if (stopped) {
+					LOGGER.debug("Synchronization slice stopped at " + checkpoint.getCursor());
+				}
+
+				saveCheckpoint();
+			}
+		}
+
+		return complete;
+	}
+
+	/**
+	 * Releases the subjects of an unfinished lap.
+	 */
+	private void closeLap() {
+		if (lapSubjects != null) {
+			lapSubjects.close();
+			lapSubjects = null;
+		}
+	}
+
+	/**
+	 * Moves the checkpoint past a synchronized subject and saves it periodically.
+	 */
+	private void advance(String uri) {
+		if (checkpoint != null && uri != null && checkpoint.processed(uri)) {
+			saveCheckpoint();
+		}
+	}
+
+	/**
+	 * Saves the checkpoint once everything before it reached the GIN core and the fingerprint
+	 * store, so a resumed synchronization does not skip pending contents.
+	 */
+	private void saveCheckpoint() {
+		if (batcher != null) {
+			batcher.flush();
+		}
+
+		if (fingerprints != null) {
+			fingerprints.save();
+		}
+
+		checkpoint.save();
+	}
+
+	/**
+	 * Synchronizes the subjects of the model on several threads. The contents are built
+	 * concurrently under a read lock of the model, while all calls to the GIN core are made from
+	 * the calling thread, either in the order of the subjects or as chunks complete.
+	 *
+	 * @return the subjects taken from the iterator, but not synchronized within the budget, in
+	 *         their order
+	 */
+	private List<Resource> synchronizeParallel(Iterator<Resource> subjects, int threads, boolean ordered, SyncBudget budget) throws IQserException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CompletionService<List<PreparedSubject>> completion = new ExecutorCompletionService<List<PreparedSubject>>(executor);
+		Map<Future<List<PreparedSubject>>, List<Resource>> inFlight = new LinkedHashMap<Future<List<PreparedSubject>>, List<Resource>>();
+
+		try {
+			while (subjects.hasNext() || !inFlight.isEmpty()) {
+				// Keep every thread busy, but bound the prepared subjects waiting for the core
+				while (subjects.hasNext() && inFlight.size() < threads * 2) {
+					List<Resource> chunk = new ArrayList<Resource>(PARALLEL_CHUNK_SIZE);
+
+					while (chunk.size() < PARALLEL_CHUNK_SIZE && subjects.hasNext()) {
+						chunk.add(subjects.next());
+					}
+
+					Callable<List<PreparedSubject>> task = new PrepareTask(chunk);
+					inFlight.put(ordered ? executor.submit(task) : completion.submit(task), chunk);
+				}
+
+				Future<List<PreparedSubject>> done = ordered ? inFlight.keySet().iterator().next() : completion.take();
+				List<Resource> chunk = inFlight.remove(done);
+				List<PreparedSubject> prepared = done.get();
+
+				for (int i = 0; i < prepared.size(); i++) {
+					synchronize(prepared.get(i));
+					advance(prepared.get(i).getUri());
+
+					if (budget.spend()) {
+						// Subjects behind the budget are handed back, the next slice prepares them again
+						List<Resource> unsynchronized = new ArrayList<Resource>(chunk.subList(i + 1, chunk.size()));
+
+						for (List<Resource> pending : inFlight.values()) {
+							unsynchronized.addAll(pending);
+						}
+
+						return unsynchronized;
+					}
+				}
+			}
+
+			return Collections.emptyList();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while synchronizing", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+
+			throw new IllegalStateException("Unable to build contents", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Prepares a chunk of subjects under a read lock of the model.
+	 */
+	private class PrepareTask implements Callable<List<PreparedSubject>> {
+
+		private final List<Resource> chunk;
+
+		PrepareTask(List<Resource> chunk) {
+			this.chunk = chunk;
+		}
+
+		public List<PreparedSubject> call() {
+			List<PreparedSubject> prepared = new ArrayList<PreparedSubject>(chunk.size());
+
+			model.enterCriticalSection(Lock.READ);
+
+			try {
+				for (Resource res : chunk) {
+					PreparedSubject subject = prepare(res, res.listProperties().toList());
+
+					// Unchanged subjects are skipped anyway, so their content is not needed
+					if (fingerprints == null || subject.getUri() == null
+							|| !fingerprints.matches(subject.getUri(), subject.getFingerprint())) {
+						subject.getContent(contentBuilder);
+					}
+
+					prepared.add(subject);
+				}
+			} finally {
+				model.leaveCriticalSection();
+			}
+
+			return prepared;
+		}
+	}
+
+	private PreparedSubject prepare(Resource res, List<Statement> statements) {
+		long fingerprint = 0;
+
+		if (fingerprints != null && res.getURI() != null) {
+			fingerprint = Fingerprints.of(statements);
+		}
+
+		return new PreparedSubject(res, statements, fingerprint);
+	}
+
+	/**
+	 * Adds the content of a resource to the GIN core or updates the existing one. With fingerprints
+	 * enabled, resources whose statements did not change since they were last passed to the GIN
+	 * core are skipped without any call to the core.
+	 */
+	private void synchronize(PreparedSubject subject) throws IQserException {
+		String uri = subject.getUri();
+
+		metrics.seen();
+
+		// Contents collected behind a run of unchanged subjects are not held back
+		if (batcher != null) {
+			batcher.flushIfDue();
+		}
+
+		if (fingerprints != null && uri != null && fingerprints.matches(uri, subject.getFingerprint())) {
+			metrics.skipped();
+			return;
+		}
+
+		// A streamed subject may have changed without notice, otherwise its fingerprint tells
+		if (binaryDataCache != null && (fingerprints != null || streamSource != null)) {
+			binaryDataCache.invalidate(uri);
+		}
+
+		ExistingContentIndex existing = getExistingContentIndex();
+
+		if (existing.contains(uri)) {
+			// A differing fingerprint marks a change, without one only the modification date can tell
+			boolean changed = fingerprints != null && fingerprints.contains(uri);
+
+			if (changed || modificationDate > existing.getModificationDate(uri)) {
+				Content content = subject.getContent(contentBuilder);
+				if (content != null) {
+					submit(content, true, subject.getFingerprint());
+					return;
+				}
+			}
+		} else {
+			Content c = subject.getContent(contentBuilder);
+			if (c != null) {
+				submit(c, false, subject.getFingerprint());
+				return;
+			}
+		}
+
+		metrics.skipped();
+		recordFingerprint(uri, subject.getFingerprint());
+	}
+
+	/**
+	 * Returns the index of the existing contents, loading it with a single call to the GIN core on
+	 * first use in each synchronization.
+	 */
+	private ExistingContentIndex getExistingContentIndex() throws IQserException {
+		if (existingContents == null) {
+			existingContents = ExistingContentIndex.of(this.getExistingContents());
+			LOGGER.debug("Indexed " + existingContents.size() + " existing contents");
+		}
+
+		return existingContents;
+	}
+
+	/**
+	 * Passes a content to the GIN core, through the batcher if batching is enabled.
+	 */
+	private void submit(Content content, boolean update, long fingerprint) throws IQserException {
+		if (batcher != null) {
+			if (update) {
+				batcher.update(content, fingerprint);
+			} else {
+				batcher.add(content, fingerprint);
+			}
+		} else {
+			submitter.submit(content, update, fingerprint);
+		}
+	}
+
+	private void recordFingerprint(String uri, long fingerprint) {
+		if (fingerprints != null && uri != null) {
+			fingerprints.put(uri, fingerprint);
+		}
+	}
+
 	@Override
 	public void doHousekeeping() {
 		LOGGER.debug("Start doHousekeeping()");
+
+		long start = System.nanoTime();
+		
+		if (streamSource != null && streamedSubjects == null) {
+			LOGGER.info("Skipping housekeeping until the first streaming pass has finished");
+			return;
+		}
+
+		if (loader != null && !loader.isLoaded()) {
+			// Contents of subjects not loaded yet would be removed
+			LOGGER.info("Skipping housekeeping until the model is loaded");
+			return;
+		}
+
+		if (sourceMonitor != null && !housekeepingPending) {
+			// Removals of a changed source are pushed by the synchronization already
+			LOGGER.debug("Skipping housekeeping, the source did not change since the last one");
+			return;
+		}
 		
 		try {
+			LiveSubjectSet live = getLiveSubjects();
+			List<String> removed = new ArrayList<String>();
+
 			Collection<Content> col = this.getExistingContents();
 			Iterator<Content> iter = col.iterator();
 			
 			while (iter.hasNext()) {
 				Content c = (Content) iter.next();
-				Resource res = model.getResource(c.getContentUrl());
 				
-				if (!res.listProperties().hasNext()) {
-					this.removeContent(c.getContentUrl());
+				if (!live.contains(c.getContentUrl())) {
+					removed.add(c.getContentUrl());
 				}
 			}
+			
+			col = null;
+			
+			LOGGER.debug("Removing " + removed.size() + " contents");
+			
+			for (String url : removed) {
+				remove(url);
+			}
+
+			housekeepingPending = false;
 		} catch (IQserException e) {
 			LOGGER.error("Unable to perform housekeeping - " + e.getLocalizedMessage());
 		}
+
+		metrics.latency(ProviderMetrics.HOUSEKEEPING).recordSince(start);
 		
 		LOGGER.debug("Finished doHousekeeping()");
 	}
 
+	/**
+	 * Removes a content from the GIN core and forgets everything known about it.
+	 */
+	private void remove(String url) throws IQserException {
+		this.removeContent(url);
+		metrics.removed();
+
+		if (fingerprints != null) {
+			fingerprints.remove(url);
+		}
+
+		if (binaryDataCache != null) {
+			binaryDataCache.invalidate(url);
+		}
+	}
+
+	/**
+	 * Returns the subjects of the last streaming pass or collects the subjects of the model.
+	 */
+	private LiveSubjectSet getLiveSubjects() {
+		if (streamSource != null) {
+			return LiveSubjectSet.of(streamedSubjects);
+		}
+
+		model.enterCriticalSection(Lock.READ);
+
+		try {
+			if (HOUSEKEEPING_BLOOM.equalsIgnoreCase(getInitParams().getProperty("housekeepingFilter"))) {
+				return LiveSubjectSet.bloom(model.getGraph());
+			}
+
+			return LiveSubjectSet.hashed(model.getGraph());
+		} finally {
+			model.leaveCriticalSection();
+		}
+	}
+
 	public Content getContent(String url) {
 		LOGGER.debug("Start getContent(" + url + ")");
+
+		long start = System.nanoTime();
 		
-		Content c = new Content();
-		
-		c.setContentUrl(url);
-		c.setProvider(getName());
-		c.setType(CONTENT_TYPE);
-		
-		Resource resource = model.getResource(url);
-		StmtIterator iter = resource.listProperties();
-
-		while (iter.hasNext()) {
-		    Statement stmt      = iter.nextStatement();  // get next statement
-		    Property  predicate = stmt.getPredicate();   // get the predicate
-		    RDFNode   object    = stmt.getObject();      // get the object
-		    
-		    String	  name		= predicate.getLocalName();
-		    // Attribute name must be uppercase, without any blanks, etc
-		    String upperCaseName = name.toUpperCase().replace(' ', '_').replace("Ä", "AE").replace("Ö", "OE").replace("Ü", "UE").replace("ß", "SS").replaceAll("[^A-Z\\d-_.]", "");
-
-		    
-		    String	  value		= object.toString();
-		    int       type		= Attribute.ATTRIBUTE_TYPE_TEXT;
-		    boolean   isKey     = false;
-		    
-		    if (object.isLiteral()) {
-		    	// Check, whether object is a number, boolean or byte
-		    	// Use init params to check data and currency
-		    	isKey = true;
-		    }
-		    
-		    if (!upperCaseName.equalsIgnoreCase("type")) {
-			    c.addAttribute(new Attribute(upperCaseName, value, type, isKey));
-		    } else if (value.endsWith("Seq")) {
-		    	return null;
-		    } 
-		}
-		
-		if (resource.getLocalName() != null && c.getAttributeByName("Name") == null) {
-			c.addAttribute(new Attribute(ATTRIBUTE_NAME, resource.getLocalName(), Attribute.ATTRIBUTE_TYPE_TEXT, true));
-		}
+		Content c;
 		
-		if (resource.getNameSpace() != null) {
-			c.addAttribute(new Attribute(ATTRIBUTE_RDFNAMESPACE, resource.getNameSpace(), Attribute.ATTRIBUTE_TYPE_TEXT));
+		if (streamSource != null) {
+			c = contentBuilder.build(Node.createURI(url), streamSource.describe(url));
+		} else if (!awaitLoaded(url)) {
+			c = null;
+		} else {
+			model.enterCriticalSection(Lock.READ);
+
+			try {
+				Resource resource = model.getResource(url);
+				c = contentBuilder.build(resource, resource.listProperties());
+			} finally {
+				model.leaveCriticalSection();
+			}
 		}
 
+		metrics.latency(ProviderMetrics.GET_CONTENT).recordSince(start);
+
 		LOGGER.debug("Finished getContent(" + url + ")");
 		
 		return c;
@@ -176,12 +1049,15 @@ public class RDFContentProvider extends AbstractContentProvider {
 	public Content getExistingContent(InputStream inputStream) throws IQserException {
 		LOGGER.debug("Starting getContent(" + inputStream.toString() + ")");
 
-		Model cModel = ModelFactory.createDefaultModel();
-		cModel.read(inputStream, null);
-		
-		ResIterator iter = cModel.listResourcesWithProperty(null);
-		Resource res = iter.next();
-		Content c = this.getContent(res.getURI());
+		String uri;
+
+		try {
+			uri = FirstSubjectExtractor.extract(inputStream);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to read the content - " + e.getLocalizedMessage(), e);
+		}
+
+		Content c = uri == null ? null : this.getContent(uri);
 		
 		LOGGER.debug("Finished getContent(" + inputStream.toString() + ")");
 		
@@ -191,16 +1067,108 @@ public class RDFContentProvider extends AbstractContentProvider {
 	public byte[] getBinaryData(Content c) {
 		LOGGER.debug("Starting getBinaryData(" + c.getContentId() + ")");
 
-		Resource resource = model.getResource(c.getContentUrl());
-		SimpleSelector sel = new SimpleSelector(resource, (Property)null, (Object)null);
-		Model resModel = model.query(sel);
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		
-		resModel.write(out);
-		
+		long start = System.nanoTime();
+
+		if (binaryDataCache != null) {
+			byte[] cached = binaryDataCache.get(c.getContentUrl());
+
+			if (cached != null) {
+				metrics.latency(ProviderMetrics.GET_BINARY_DATA).recordSince(start);
+				return cached;
+			}
+		}
+
+		List<Triple> triples;
+
+		if (streamSource != null) {
+			triples = streamSource.describe(c.getContentUrl());
+		} else if (!awaitLoaded(c.getContentUrl())) {
+			metrics.latency(ProviderMetrics.GET_BINARY_DATA).recordSince(start);
+			return null;
+		} else {
+			model.enterCriticalSection(Lock.READ);
+
+			try {
+				triples = model.getGraph().find(Node.createURI(c.getContentUrl()), Node.ANY, Node.ANY).toList();
+			} finally {
+				model.leaveCriticalSection();
+			}
+		}
+
+		byte[] data = serializer.serialize(triples);
+
+		if (binaryDataCache != null) {
+			binaryDataCache.put(c.getContentUrl(), data);
+		}
+
+		metrics.latency(ProviderMetrics.GET_BINARY_DATA).recordSince(start);
+
 		LOGGER.debug("Finishing getBinaryData(" + c.getContentId() + ")");
 		
-		return out.toByteArray();
+		return data;
+	}
+
+	/**
+	 * Makes sure a subject is in the model before it is looked up. While the model is loaded in
+	 * the background, the lookup waits for the subject up to loadWaitMillis or, with loadWait set
+	 * to false, fails.
+	 *
+	 * @return false, if the subject was not loaded in time and the lookup has no answer
+	 */
+	private boolean awaitLoaded(String uri) {
+		if (loader == null || loader.isLoaded()) {
+			return true;
+		}
+
+		if ("false".equalsIgnoreCase(getInitParams().getProperty("loadWait"))) {
+			if (!loader.isLoaded(uri)) {
+				throw new IllegalStateException(uri + " is not loaded yet");
+			}
+
+			return true;
+		}
+
+		int timeout = getIntParam("loadWaitMillis", DEFAULT_LOAD_WAIT_MILLIS);
+
+		try {
+			if (loader.await(uri, timeout)) {
+				return true;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for " + uri, e);
+		}
+
+		LOGGER.warn(uri + " was not loaded within " + timeout + " ms");
+
+		return false;
+	}
+
+	private int getSyncThreads() {
+		int threads = getIntParam("syncThreads", 1);
+
+		return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+	}
+
+	private int getLoadThreads() {
+		int threads = getIntParam("loadThreads", 1);
+
+		return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+	}
+
+	private int getIntParam(String name, int defaultValue) {
+		String value = getInitParams().getProperty(name);
+
+		if (value == null) {
+			return defaultValue;
+		}
+
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			LOGGER.warn("Invalid value of " + name + ": " + value + " - using " + defaultValue);
+			return defaultValue;
+		}
 	}
 
 	@Override
@@ -0,0 +1,146 @@
+package sf.net.plugin.rdf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.writer.WriterStreamRDFBlocks;
+import org.apache.log4j.Logger;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+
+/**
+ * Serializes the statements of a single resource as binary data. N-Triples and Turtle are written
+ * straight from the triples, RDF/XML needs a small model of the resource for the Jena writer.
+ */
+class ResourceSerializer {
+
+	private static Logger LOGGER = Logger.getLogger(ResourceSerializer.class);
+
+	static final String FORMAT_NTRIPLES = "N-TRIPLES";
+	static final String FORMAT_TURTLE = "TURTLE";
+	static final String FORMAT_RDFXML = "RDF/XML";
+
+	static final String COMPRESSION_GZIP = "gzip";
+
+	// Bytes added to the terms of a triple by the syntax, e.g. brackets, blanks and the final dot
+	private static final int TRIPLE_OVERHEAD = 12;
+
+	// Expected compression ratio of N-Triples, used to size the buffer of gzipped data
+	private static final int GZIP_RATIO = 4;
+
+	private final String format;
+	private final boolean gzip;
+
+	/**
+	 * @param format the output format, N-TRIPLES, TURTLE or RDF/XML (default)
+	 * @param compression "gzip" to compress N-Triples, otherwise null
+	 */
+	ResourceSerializer(String format, String compression) {
+		if (FORMAT_NTRIPLES.equalsIgnoreCase(format) || "NT".equalsIgnoreCase(format)) {
+			this.format = FORMAT_NTRIPLES;
+		} else if (FORMAT_TURTLE.equalsIgnoreCase(format) || "TTL".equalsIgnoreCase(format)) {
+			this.format = FORMAT_TURTLE;
+		} else {
+			if (format != null && !FORMAT_RDFXML.equalsIgnoreCase(format)) {
+				LOGGER.warn("Unknown binary format " + format + " - using " + FORMAT_RDFXML);
+			}
+
+			this.format = FORMAT_RDFXML;
+		}
+
+		this.gzip = COMPRESSION_GZIP.equalsIgnoreCase(compression) && this.format == FORMAT_NTRIPLES;
+
+		if (COMPRESSION_GZIP.equalsIgnoreCase(compression) && !gzip) {
+			LOGGER.warn("Compression is only supported for " + FORMAT_NTRIPLES + " - writing uncompressed " + this.format);
+		}
+	}
+
+	String getFormat() {
+		return format;
+	}
+
+	/**
+	 * Serializes the triples of a resource.
+	 *
+	 * @param triples the triples of the resource
+	 * @return the serialized triples
+	 */
+	byte[] serialize(List<Triple> triples) {
+		int estimate = estimateSize(triples);
+		Buffer buffer = new Buffer(gzip ? estimate / GZIP_RATIO + 32 : estimate);
+
+		try {
+			if (format == FORMAT_RDFXML) {
+				Model resModel = ModelFactory.createDefaultModel();
+
+				for (Triple triple : triples) {
+					resModel.getGraph().add(triple);
+				}
+
+				resModel.write(buffer, FORMAT_RDFXML);
+			} else {
+				OutputStream out = gzip ? new GZIPOutputStream(buffer, 8192) : buffer;
+				StreamRDF writer = format == FORMAT_TURTLE ? new WriterStreamRDFBlocks(out) : StreamRDFLib.writer(out);
+
+				writer.start();
+
+				for (Triple triple : triples) {
+					writer.triple(triple);
+				}
+
+				writer.finish();
+				out.close();
+			}
+		} catch (IOException e) {
+			// Not thrown by in memory streams
+			throw new IllegalStateException(e);
+		}
+
+		return buffer.getBytes();
+	}
+
+	private static int estimateSize(List<Triple> triples) {
+		int size = 0;
+
+		for (Triple triple : triples) {
+			size += length(triple.getSubject()) + length(triple.getPredicate()) + length(triple.getObject()) + TRIPLE_OVERHEAD;
+		}
+
+		return size;
+	}
+
+	private static int length(Node node) {
+		if (node.isURI()) {
+			return node.getURI().length();
+		} else if (node.isLiteral()) {
+			String datatype = node.getLiteralDatatypeURI();
+			return node.getLiteralLexicalForm().length() + node.getLiteralLanguage().length()
+					+ (datatype == null ? 0 : datatype.length());
+		}
+
+		return 16;
+	}
+
+	/**
+	 * Byte array stream returning its array without a copy, if the estimated size was exact.
+	 */
+	private static class Buffer extends ByteArrayOutputStream {
+
+		Buffer(int size) {
+			super(Math.max(32, size));
+		}
+
+		byte[] getBytes() {
+			return count == buf.length ? buf : Arrays.copyOf(buf, count);
+		}
+	}
+}
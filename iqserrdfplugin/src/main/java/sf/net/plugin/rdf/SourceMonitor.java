@@ -0,0 +1,214 @@
+package sf.net.plugin.rdf;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.log4j.Logger;
+
+import com.hp.hpl.jena.query.Dataset;
+
+/**
+ * Loads the RDF source into a dataset and cheaply tells whether it changed since the last load.
+ * HTTP sources are fetched with a conditional GET on their ETag and Last-Modified headers. For
+ * files the modification time and size are compared, and a checksum if only the modification
+ * time changed. Other sources are loaded once and never refreshed.
+ */
+class SourceMonitor {
+
+	private static Logger LOGGER = Logger.getLogger(SourceMonitor.class);
+
+	private final String url;
+
+	// Version of the last load
+	private String etag = null;
+	private long lastModified = 0;
+	private long size = -1;
+	private long checksum = 0;
+	private boolean loaded = false;
+
+	SourceMonitor(String url) {
+		this.url = url;
+	}
+
+	/**
+	 * Loads the source unconditionally.
+	 *
+	 * @return the source
+	 */
+	Dataset load() throws IOException {
+		loaded = false;
+		etag = null;
+		lastModified = 0;
+		size = -1;
+
+		return loadIfChanged();
+	}
+
+	/**
+	 * Loads the source, if it changed since the last load.
+	 *
+	 * @return the new version or null, if the source did not change
+	 */
+	Dataset loadIfChanged() throws IOException {
+		File file = toFile();
+
+		if (file != null) {
+			return loadFileIfChanged(file);
+		}
+
+		URLConnection connection = new URL(url).openConnection();
+
+		if (connection instanceof HttpURLConnection) {
+			return loadHttpIfChanged((HttpURLConnection) connection);
+		}
+
+		if (loaded) {
+			return null;
+		}
+
+		InputStream in = SourceStreams.decompress(connection.getInputStream(), url);
+
+		try {
+			Dataset dataset = read(in, RDFLanguages.contentTypeToLang(connection.getContentType()));
+			loaded = true;
+			return dataset;
+		} finally {
+			in.close();
+		}
+	}
+
+	private Dataset loadFileIfChanged(File file) throws IOException {
+		long currentSize = file.length();
+		long currentModified = file.lastModified();
+
+		if (loaded && currentSize == size && currentModified == lastModified) {
+			return null;
+		}
+
+		if (loaded && currentSize == size && checksum(file) == checksum) {
+			// Touched, but not changed
+			lastModified = currentModified;
+			return null;
+		}
+
+		CheckedInputStream checked = new CheckedInputStream(new FileInputStream(file), new CRC32());
+		InputStream in = SourceStreams.decompress(new BufferedInputStream(checked, 1 << 16), url);
+		Dataset dataset;
+
+		try {
+			dataset = read(in, null);
+
+			// The parser may stop before the end, e.g. at trailing blanks
+			byte[] rest = new byte[8192];
+
+			while (in.read(rest) >= 0) {
+				continue;
+			}
+		} finally {
+			// Waits for a decompressing thread to finish with the checked stream
+			in.close();
+		}
+
+		checksum = checked.getChecksum().getValue();
+		size = currentSize;
+		lastModified = currentModified;
+		loaded = true;
+
+		return dataset;
+	}
+
+	private Dataset loadHttpIfChanged(HttpURLConnection connection) throws IOException {
+		if (loaded && etag != null) {
+			connection.setRequestProperty("If-None-Match", etag);
+		}
+
+		if (loaded && lastModified > 0) {
+			connection.setIfModifiedSince(lastModified);
+		}
+
+		try {
+			if (loaded && connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+				return null;
+			}
+
+			if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+				throw new IOException(url + " responded with " + connection.getResponseCode() + " " + connection.getResponseMessage());
+			}
+
+			if (loaded && connection.getHeaderField("ETag") == null && connection.getLastModified() == 0) {
+				LOGGER.warn(url + " sends neither ETag nor Last-Modified, it is loaded on every synchronization");
+			}
+
+			InputStream in = SourceStreams.decompress(connection.getInputStream(), url);
+
+			try {
+				Dataset dataset = read(in, RDFLanguages.contentTypeToLang(stripParameters(connection.getContentType())));
+
+				etag = connection.getHeaderField("ETag");
+				lastModified = connection.getLastModified();
+				loaded = true;
+
+				return dataset;
+			} finally {
+				in.close();
+			}
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	private Dataset read(InputStream in, Lang lang) {
+		return GraphPartitions.read(in, url, lang == null ? SourceStreams.lang(url, Lang.RDFXML) : lang);
+	}
+
+	private File toFile() {
+		if (!url.startsWith("file:")) {
+			return null;
+		}
+
+		try {
+			return new File(new URI(url));
+		} catch (URISyntaxException e) {
+			return new File(url.substring("file:".length()));
+		} catch (IllegalArgumentException e) {
+			return new File(url.substring("file:".length()));
+		}
+	}
+
+	private static long checksum(File file) throws IOException {
+		CheckedInputStream in = new CheckedInputStream(new FileInputStream(file), new CRC32());
+		byte[] buffer = new byte[1 << 16];
+
+		try {
+			while (in.read(buffer) >= 0) {
+				continue;
+			}
+
+			return in.getChecksum().getValue();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static String stripParameters(String contentType) {
+		if (contentType == null) {
+			return null;
+		}
+
+		int semicolon = contentType.indexOf(';');
+
+		return semicolon < 0 ? contentType.trim() : contentType.substring(0, semicolon).trim();
+	}
+}
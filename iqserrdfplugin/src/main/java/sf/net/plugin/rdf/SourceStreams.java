@@ -0,0 +1,240 @@
+package sf.net.plugin.rdf;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.system.StreamRDF;
+
+/**
+ * Opens RDF sources that may be compressed with gzip, bzip2 or Zstandard. The compression is
+ * detected by the file extension (e.g. <code>dump.nt.gz</code>) or by the magic bytes of the
+ * stream. Compressed sources are decompressed on a separate thread, so decompression and
+ * parsing use two cores.
+ * <p>
+ * Zstandard requires zstd-jni on the classpath.
+ */
+final class SourceStreams {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int PIPELINE_CHUNKS = 16;
+
+	private static final String ZSTD_STREAM = "com.github.luben.zstd.ZstdInputStream";
+
+	private enum Compression {
+		NONE(""), GZIP(".gz"), BZIP2(".bz2"), ZSTD(".zst");
+
+		private final String extension;
+
+		private Compression(String extension) {
+			this.extension = extension;
+		}
+	}
+
+	private SourceStreams() {
+	}
+
+	/**
+	 * Parses the source at the given URL into the sink. The syntax is taken from the content type
+	 * of HTTP responses or derived from the file name without the compression extension, and
+	 * defaults to RDF/XML. HTTP requests negotiate the syntax like SPARQL graph queries do, so
+	 * CONSTRUCT and DESCRIBE query URLs can be read as well.
+	 *
+	 * @param sink the sink for the triples
+	 * @param url the URL of the source
+	 */
+	static void parse(StreamRDF sink, String url) {
+		parse(sink, url, new StreamHandle());
+	}
+
+	/**
+	 * Parses the source at the given URL into the sink, like {@link #parse(StreamRDF, String)}.
+	 * The connection to the source is registered with the handle, so closing the handle stops the
+	 * parser.
+	 *
+	 * @param sink the sink for the triples
+	 * @param url the URL of the source
+	 * @param handle the handle to register the connection with
+	 */
+	static void parse(StreamRDF sink, String url, StreamHandle handle) {
+		try {
+			final URLConnection connection = new URL(url).openConnection();
+			Lang lang = null;
+
+			if (connection instanceof HttpURLConnection) {
+				handle.open(new Closeable() {
+					public void close() {
+						((HttpURLConnection) connection).disconnect();
+					}
+				});
+
+				connection.setRequestProperty("Accept", SparqlHttp.ACCEPT);
+				lang = contentTypeToLang(connection.getContentType());
+			}
+
+			InputStream raw = connection.getInputStream();
+
+			if (!(connection instanceof HttpURLConnection)) {
+				handle.open(raw);
+			}
+
+			InputStream in = decompress(raw, url);
+
+			try {
+				RDFDataMgr.parse(sink, in, url, lang == null ? lang(url, Lang.RDFXML) : lang);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to read " + url + " - " + e.getLocalizedMessage(), e);
+		}
+	}
+
+	/**
+	 * Decompresses a stream, if it is compressed. Compressed streams are returned pipelined; they
+	 * must be closed to release the decompressing thread.
+	 *
+	 * @param in the raw stream
+	 * @param url the URL of the source, used to detect the compression by its extension
+	 * @return the uncompressed stream
+	 */
+	static InputStream decompress(InputStream in, String url) throws IOException {
+		InputStream buffered = in.markSupported() ? in : new BufferedInputStream(in, BUFFER_SIZE);
+		Compression compression = byExtension(url);
+
+		if (compression == Compression.NONE) {
+			compression = byMagic(buffered);
+		}
+
+		InputStream decompressed;
+
+		switch (compression) {
+		case GZIP:
+			decompressed = new GZIPInputStream(buffered, BUFFER_SIZE);
+			break;
+		case BZIP2:
+			// Parallel bzip2 tools write several concatenated streams
+			decompressed = new BZip2CompressorInputStream(buffered, true);
+			break;
+		case ZSTD:
+			decompressed = zstd(buffered);
+			break;
+		default:
+			return buffered;
+		}
+
+		return new PipelinedInputStream(decompressed, BUFFER_SIZE, PIPELINE_CHUNKS, "Decompressing " + url);
+	}
+
+	/**
+	 * Derives the syntax of a source from its file name, ignoring a compression extension.
+	 *
+	 * @param url the URL of the source
+	 * @param dftLang the syntax if the file name does not tell
+	 * @return the syntax
+	 */
+	static Lang lang(String url, Lang dftLang) {
+		Compression compression = byExtension(url);
+		String name = url.substring(0, url.length() - compression.extension.length());
+
+		return RDFLanguages.filenameToLang(name, dftLang);
+	}
+
+	/**
+	 * @return true, if the file name of the URL carries a compression extension
+	 */
+	static boolean isCompressed(String url) {
+		return byExtension(url) != Compression.NONE;
+	}
+
+	private static Lang contentTypeToLang(String contentType) {
+		if (contentType == null) {
+			return null;
+		}
+
+		int params = contentType.indexOf(';');
+		String type = params < 0 ? contentType.trim() : contentType.substring(0, params).trim();
+
+		// Plain text is sent for anything by some servers, the file name tells more then
+		if ("text/plain".equalsIgnoreCase(type)) {
+			return null;
+		}
+
+		return RDFLanguages.contentTypeToLang(type);
+	}
+
+	private static Compression byExtension(String url) {
+		String name = url.toLowerCase();
+
+		for (Compression compression : Compression.values()) {
+			if (compression != Compression.NONE && name.endsWith(compression.extension)) {
+				return compression;
+			}
+		}
+
+		return Compression.NONE;
+	}
+
+	private static Compression byMagic(InputStream in) throws IOException {
+		byte[] magic = new byte[4];
+
+		in.mark(magic.length);
+
+		int length = 0;
+
+		try {
+			while (length < magic.length) {
+				int read = in.read(magic, length, magic.length - length);
+
+				if (read < 0) {
+					break;
+				}
+
+				length += read;
+			}
+		} finally {
+			in.reset();
+		}
+
+		if (length >= 2 && (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B) {
+			return Compression.GZIP;
+		}
+
+		if (length >= 3 && magic[0] == 'B' && magic[1] == 'Z' && magic[2] == 'h') {
+			return Compression.BZIP2;
+		}
+
+		if (length >= 4 && (magic[0] & 0xFF) == 0x28 && (magic[1] & 0xFF) == 0xB5
+				&& (magic[2] & 0xFF) == 0x2F && (magic[3] & 0xFF) == 0xFD) {
+			return Compression.ZSTD;
+		}
+
+		return Compression.NONE;
+	}
+
+	private static InputStream zstd(InputStream in) throws IOException {
+		try {
+			return (InputStream) Class.forName(ZSTD_STREAM).getConstructor(InputStream.class).newInstance(in);
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Zstandard compressed sources require zstd-jni on the classpath");
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+
+			throw new IllegalStateException("Unable to create " + ZSTD_STREAM, e.getCause());
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to create " + ZSTD_STREAM, e);
+		}
+	}
+}
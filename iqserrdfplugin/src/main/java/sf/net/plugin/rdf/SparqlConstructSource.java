@@ -0,0 +1,47 @@
+package sf.net.plugin.rdf;
+
+import java.util.List;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.iqser.core.exception.IQserException;
+
+/**
+ * Streams the triples of a SPARQL CONSTRUCT or DESCRIBE query in a single request. The response
+ * is parsed while it is received and each subject is handed over as soon as it is complete.
+ * <p>
+ * Subjects should be contiguous in the result, e.g. by an ORDER BY on the subject variable.
+ */
+class SparqlConstructSource implements StreamSource {
+
+	private final String service;
+	private final Query query;
+	private final HttpTimeouts timeouts;
+
+	SparqlConstructSource(String service, String queryString, HttpTimeouts timeouts) {
+		this.service = service;
+		this.timeouts = timeouts;
+		this.query = QueryFactory.create(queryString);
+
+		if (!SparqlHttp.isGraphQuery(query)) {
+			throw new IllegalArgumentException("Not a CONSTRUCT or DESCRIBE query: " + queryString);
+		}
+	}
+
+	public void stream(SubjectHandler handler) throws IQserException {
+		try {
+			SparqlHttp.execute(service, query, new SubjectGrouper(handler), timeouts);
+		} catch (SubjectGrouper.HandlerException e) {
+			throw e.getCause();
+		}
+	}
+
+	public List<Triple> describe(String uri) {
+		return SparqlHttp.describe(service, uri, timeouts);
+	}
+
+	public void close() {
+		// Nothing kept between requests
+	}
+}
@@ -0,0 +1,189 @@
+package sf.net.plugin.rdf;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.log4j.Logger;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.ParameterizedSparqlString;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.query.ResultSetFactory;
+
+/**
+ * Executes SPARQL CONSTRUCT and DESCRIBE queries over HTTP and parses the returned triples
+ * straight into a stream, without collecting them in an intermediate model. SELECT queries are
+ * executed over the same connections, so all requests share their timeouts.
+ */
+final class SparqlHttp {
+
+	private static Logger LOGGER = Logger.getLogger(SparqlHttp.class);
+
+	static final String ACCEPT = "application/n-triples, text/plain;q=0.9, text/turtle;q=0.8, application/rdf+xml;q=0.7";
+
+	private static final String ACCEPT_RESULTS = "application/sparql-results+xml";
+
+	private SparqlHttp() {
+	}
+
+	/**
+	 * @return true, if the query returns triples instead of solutions
+	 */
+	static boolean isGraphQuery(Query query) {
+		return query.isConstructType() || query.isDescribeType();
+	}
+
+	/**
+	 * Executes a CONSTRUCT or DESCRIBE query and streams the resulting triples into the sink.
+	 *
+	 * @param service the URL of the SPARQL service
+	 * @param query the query
+	 * @param sink the sink for the triples
+	 * @param timeouts the timeouts of the request
+	 */
+	static void execute(String service, Query query, StreamRDF sink, HttpTimeouts timeouts) {
+		execute(service, query, sink, timeouts, new StreamHandle());
+	}
+
+	/**
+	 * Executes a CONSTRUCT or DESCRIBE query like {@link #execute(String, Query, StreamRDF, HttpTimeouts)}.
+	 * The connection is registered with the handle, so closing the handle stops the parser.
+	 *
+	 * @param service the URL of the SPARQL service
+	 * @param query the query
+	 * @param sink the sink for the triples
+	 * @param timeouts the timeouts of the request
+	 * @param handle the handle to register the connection with
+	 */
+	static void execute(String service, Query query, StreamRDF sink, HttpTimeouts timeouts, StreamHandle handle) {
+		LOGGER.debug("Executing graph query against " + service);
+
+		try {
+			HttpURLConnection connection = open(service, query, ACCEPT, timeouts, handle);
+			InputStream in = new BufferedInputStream(connection.getInputStream());
+
+			try {
+				RDFDataMgr.parse(sink, in, toLang(connection.getContentType()));
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to query " + service, e);
+		}
+	}
+
+	/**
+	 * Executes a SELECT query. The response is read completely within the timeouts of the request
+	 * and parsed from memory afterwards, so iterating the result does not wait for the service.
+	 *
+	 * @param service the URL of the SPARQL service
+	 * @param query the query
+	 * @param timeouts the timeouts of the request
+	 * @return the solutions
+	 */
+	static ResultSet select(String service, Query query, HttpTimeouts timeouts) {
+		LOGGER.debug("Executing select query against " + service);
+
+		try {
+			HttpURLConnection connection = open(service, query, ACCEPT_RESULTS, timeouts, new StreamHandle());
+			InputStream in = connection.getInputStream();
+			ByteArrayOutputStream response = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+
+			try {
+				for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+					response.write(buffer, 0, read);
+				}
+			} finally {
+				in.close();
+			}
+
+			return ResultSetFactory.fromXML(new ByteArrayInputStream(response.toByteArray()));
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to query " + service, e);
+		}
+	}
+
+	private static HttpURLConnection open(String service, Query query, String accept, HttpTimeouts timeouts,
+			StreamHandle handle) throws IOException {
+		String url = service + (service.indexOf('?') < 0 ? '?' : '&') + "query=" + encode(query.toString());
+
+		final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setRequestProperty("Accept", accept);
+		timeouts.apply(connection);
+
+		handle.open(new Closeable() {
+			public void close() {
+				connection.disconnect();
+			}
+		});
+
+		if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+			throw new IllegalStateException("SPARQL service " + service + " responded with "
+					+ connection.getResponseCode() + " " + connection.getResponseMessage());
+		}
+
+		return connection;
+	}
+
+	/**
+	 * Fetches all triples of a single subject.
+	 *
+	 * @param service the URL of the SPARQL service
+	 * @param uri the URI of the subject
+	 * @param timeouts the timeouts of the request
+	 * @return the triples of the subject
+	 */
+	static List<Triple> describe(String service, String uri, HttpTimeouts timeouts) {
+		// The URI is checked against breaking out of the IRI when it is inserted
+		ParameterizedSparqlString describe = new ParameterizedSparqlString("CONSTRUCT { ?s ?p ?o } WHERE { ?s ?p ?o }");
+		describe.setIri("s", uri);
+
+		final List<Triple> triples = new ArrayList<Triple>();
+
+		execute(service, describe.asQuery(), new StreamRDFBase() {
+			@Override
+			public void triple(Triple triple) {
+				triples.add(triple);
+			}
+		}, timeouts);
+
+		return triples;
+	}
+
+	private static Lang toLang(String contentType) {
+		Lang lang = null;
+
+		if (contentType != null) {
+			int params = contentType.indexOf(';');
+			lang = RDFLanguages.contentTypeToLang(params < 0 ? contentType.trim() : contentType.substring(0, params).trim());
+		}
+
+		// RDF/XML is the default result format of most SPARQL services
+		return lang == null ? Lang.RDFXML : lang;
+	}
+
+	private static String encode(String value) {
+		try {
+			return URLEncoder.encode(value, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,278 @@
+package sf.net.plugin.rdf;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.log4j.Logger;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.query.QuerySolution;
+import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.syntax.PatternVars;
+import com.iqser.core.exception.IQserException;
+
+/**
+ * Streams the result of a SPARQL query page by page. The query is ordered and split into
+ * LIMIT/OFFSET pages, each page is turned into contents before it is dropped, so memory only
+ * depends on the page size and the number of pages in flight.
+ * <p>
+ * For SELECT queries the first three projected variables are taken as subject, predicate and
+ * object. CONSTRUCT and DESCRIBE queries are paged over the solutions of their WHERE clause,
+ * ordered by the variables of the resulting subjects first, so the triples of a subject stay
+ * together across pages. A CONSTRUCT query with a constant subject in its template is fetched in a
+ * single request instead, as its triples would be spread over all pages.
+ */
+class SparqlPagedSource implements StreamSource {
+
+	private static Logger LOGGER = Logger.getLogger(SparqlPagedSource.class);
+
+	private final String service;
+	private final Query query;
+	private final int pageSize;
+	private final int maxPagesInFlight;
+	private final HttpTimeouts timeouts;
+
+	private final boolean graphQuery;
+	private final boolean paged;
+	private final long baseOffset;
+	private final long maxResults;
+
+	SparqlPagedSource(String service, String queryString, int pageSize, int maxPagesInFlight, HttpTimeouts timeouts) {
+		this.service = service;
+		this.query = QueryFactory.create(queryString);
+		this.pageSize = pageSize;
+		this.maxPagesInFlight = Math.max(1, maxPagesInFlight);
+		this.timeouts = timeouts;
+
+		this.graphQuery = SparqlHttp.isGraphQuery(query);
+
+		if (!graphQuery && (!query.isSelectType() || query.getResultVars().size() < 3)) {
+			throw new IllegalArgumentException("Paged SPARQL queries must select subject, predicate and object");
+		}
+
+		this.paged = !hasConstantSubject(query);
+
+		if (!paged) {
+			LOGGER.info("The CONSTRUCT template has a constant subject, the query is not paged");
+		}
+
+		// Paging is only stable on a total order of the solutions
+		if (paged && !query.hasOrderBy() && query.getQueryPattern() != null) {
+			Set<String> order = new LinkedHashSet<String>();
+
+			if (query.isConstructType()) {
+				for (Triple triple : query.getConstructTemplate().getTriples()) {
+					if (triple.getSubject().isVariable()) {
+						order.add(triple.getSubject().getName());
+					}
+				}
+			} else if (query.isDescribeType()) {
+				order.addAll(query.getResultVars());
+			}
+
+			if (graphQuery) {
+				for (Var var : PatternVars.vars(query.getQueryPattern())) {
+					order.add(var.getVarName());
+				}
+			} else {
+				order.addAll(query.getResultVars());
+			}
+
+			for (String var : order) {
+				query.addOrderBy(var, Query.ORDER_ASCENDING);
+			}
+		}
+
+		baseOffset = query.hasOffset() ? query.getOffset() : 0;
+
+		if (query.getQueryPattern() == null) {
+			// A DESCRIBE of constant resources has no solutions to page over
+			maxResults = 1;
+		} else {
+			maxResults = query.hasLimit() ? query.getLimit() : Long.MAX_VALUE;
+		}
+	}
+
+	public void stream(SubjectHandler handler) throws IQserException {
+		SubjectGrouper grouper = new SubjectGrouper(handler);
+
+		if (!paged) {
+			try {
+				SparqlHttp.execute(service, query, grouper, timeouts);
+			} catch (SubjectGrouper.HandlerException e) {
+				throw e.getCause();
+			}
+
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(maxPagesInFlight);
+		LinkedList<Future<Page>> inFlight = new LinkedList<Future<Page>>();
+
+		long nextOffset = 0;
+		boolean exhausted = false;
+
+		try {
+			grouper.start();
+
+			while (true) {
+				while (!exhausted && inFlight.size() < maxPagesInFlight && nextOffset < maxResults) {
+					long limit = Math.min(pageSize, maxResults - nextOffset);
+					inFlight.add(executor.submit(new PageFetch(nextOffset, limit)));
+					nextOffset += limit;
+				}
+
+				if (inFlight.isEmpty()) {
+					break;
+				}
+
+				Page page = inFlight.removeFirst().get();
+
+				for (Triple triple : page.triples) {
+					grouper.triple(triple);
+				}
+
+				if (page.rows < page.limit) {
+					exhausted = true;
+
+					for (Future<Page> pending : inFlight) {
+						pending.cancel(true);
+					}
+
+					inFlight.clear();
+				}
+			}
+
+			grouper.finish();
+		} catch (SubjectGrouper.HandlerException e) {
+			throw e.getCause();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while paging " + service, e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+
+			throw new IllegalStateException("Unable to page " + service, e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	public List<Triple> describe(String uri) {
+		return SparqlHttp.describe(service, uri, timeouts);
+	}
+
+	public void close() {
+		// Nothing kept between requests
+	}
+
+	/**
+	 * @return true, if the query is a CONSTRUCT query with a URI or literal as subject of its
+	 *         template; blank nodes are created per solution
+	 */
+	private static boolean hasConstantSubject(Query query) {
+		if (!query.isConstructType()) {
+			return false;
+		}
+
+		for (Triple triple : query.getConstructTemplate().getTriples()) {
+			if (triple.getSubject().isConcrete() && !triple.getSubject().isBlank()) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Triples of one page and the number of solutions it was built from.
+	 */
+	private static class Page {
+
+		final List<Triple> triples;
+		final long rows;
+		final long limit;
+
+		Page(List<Triple> triples, long rows, long limit) {
+			this.triples = triples;
+			this.rows = rows;
+			this.limit = limit;
+		}
+	}
+
+	private class PageFetch implements Callable<Page> {
+
+		private final long offset;
+		private final long limit;
+
+		PageFetch(long offset, long limit) {
+			this.offset = offset;
+			this.limit = limit;
+		}
+
+		public Page call() {
+			Query page = query.cloneQuery();
+
+			if (page.getQueryPattern() != null) {
+				page.setOffset(baseOffset + offset);
+				page.setLimit(limit);
+			}
+
+			LOGGER.debug("Fetching page at offset " + offset + " from " + service);
+
+			if (graphQuery) {
+				return fetchTriples(page);
+			}
+
+			List<String> vars = query.getResultVars();
+			List<Triple> triples = new ArrayList<Triple>();
+			long rows = 0;
+
+			ResultSet result = SparqlHttp.select(service, page, timeouts);
+
+			while (result.hasNext()) {
+				QuerySolution solution = result.next();
+				RDFNode s = solution.get(vars.get(0));
+				RDFNode p = solution.get(vars.get(1));
+				RDFNode o = solution.get(vars.get(2));
+
+				rows++;
+
+				if (s != null && s.isResource() && p != null && p.isURIResource() && o != null) {
+					triples.add(Triple.create(s.asNode(), p.asNode(), o.asNode()));
+				}
+			}
+
+			return new Page(triples, rows, limit);
+		}
+
+		private Page fetchTriples(Query page) {
+			final List<Triple> triples = new ArrayList<Triple>();
+
+			SparqlHttp.execute(service, page, new StreamRDFBase() {
+				@Override
+				public void triple(Triple triple) {
+					triples.add(triple);
+				}
+			}, timeouts);
+
+			// The number of solutions is unknown, so only an empty page ends the result
+			return new Page(triples, triples.isEmpty() ? 0 : limit, limit);
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package sf.net.plugin.rdf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Holds the open stream or connection of a source while it is read, so another thread can close it
+ * to stop a reader that is blocked in I/O. Interrupting the reader does not unblock socket reads.
+ * A stream registered after the handle was closed is closed right away.
+ */
+class StreamHandle implements Closeable {
+
+	private Closeable stream = null;
+	private boolean closed = false;
+
+	/**
+	 * Registers the stream being read.
+	 *
+	 * @param stream the stream or a closeable releasing the connection
+	 * @throws IOException if the handle was closed already
+	 */
+	synchronized void open(Closeable stream) throws IOException {
+		if (closed) {
+			stream.close();
+			throw new InterruptedIOException("Closed while opening the source");
+		}
+
+		this.stream = stream;
+	}
+
+	/**
+	 * Closes the registered stream, if any, and any stream registered later.
+	 */
+	public synchronized void close() throws IOException {
+		closed = true;
+
+		if (stream != null) {
+			stream.close();
+		}
+	}
+}
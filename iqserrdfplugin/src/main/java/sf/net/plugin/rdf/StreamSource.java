@@ -0,0 +1,33 @@
+package sf.net.plugin.rdf;
+
+import java.util.List;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.iqser.core.exception.IQserException;
+
+/**
+ * A RDF source that is streamed subject by subject instead of being loaded into a model.
+ */
+interface StreamSource {
+
+	/**
+	 * Streams all subjects of the source into the handler.
+	 *
+	 * @param handler the handler for the subjects
+	 * @throws IQserException if the handler failed
+	 */
+	void stream(SubjectHandler handler) throws IQserException;
+
+	/**
+	 * Looks up the triples of a single subject.
+	 *
+	 * @param uri the URI of the subject
+	 * @return all triples of the subject
+	 */
+	List<Triple> describe(String uri);
+
+	/**
+	 * Releases the resources of the source.
+	 */
+	void close();
+}
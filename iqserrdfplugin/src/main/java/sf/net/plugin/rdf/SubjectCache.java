@@ -0,0 +1,173 @@
+package sf.net.plugin.rdf;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.log4j.Logger;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+ * Keeps the triples of a streaming pass in a temporary file, so single subjects are looked up
+ * without parsing the whole source again. Each run of consecutive triples of a subject is
+ * appended as N-Triples, together with the offset of the previous run of the same subject. An
+ * index maps the hashed URIs to the offset of their last run.
+ * <p>
+ * The cache is written by one thread and sealed before it is read.
+ */
+class SubjectCache {
+
+	private static Logger LOGGER = Logger.getLogger(SubjectCache.class);
+
+	private static final long NONE = -1;
+
+	private final File file;
+	private final LongLongHashMap index = new LongLongHashMap();
+
+	private DataOutputStream out;
+	private RandomAccessFile in = null;
+	private long position = 0;
+
+	private SubjectCache(File file) throws IOException {
+		this.file = file;
+		this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+	}
+
+	/**
+	 * @return an empty cache in a new temporary file
+	 */
+	static SubjectCache create() {
+		try {
+			File file = File.createTempFile("rdf-subjects", ".nt");
+			file.deleteOnExit();
+
+			return new SubjectCache(file);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to create subject cache - " + e.getLocalizedMessage(), e);
+		}
+	}
+
+	/**
+	 * Appends a run of triples of a subject.
+	 *
+	 * @param subject the subject
+	 * @param triples the triples of the run
+	 */
+	void add(Node subject, List<Triple> triples) {
+		if (!subject.isURI()) {
+			return;
+		}
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		StreamRDF writer = StreamRDFLib.writer(buffer);
+
+		writer.start();
+
+		for (Triple triple : triples) {
+			writer.triple(triple);
+		}
+
+		writer.finish();
+
+		long hash = Fingerprints.hash(subject.getURI());
+		byte[] bytes = buffer.toByteArray();
+
+		try {
+			out.writeLong(index.get(hash, NONE));
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to write " + file + " - " + e.getLocalizedMessage(), e);
+		}
+
+		index.put(hash, position);
+		position += 12 + bytes.length;
+	}
+
+	/**
+	 * Finishes writing, the cache is read only from now on.
+	 */
+	void seal() {
+		try {
+			out.close();
+			out = null;
+			in = new RandomAccessFile(file, "r");
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to read " + file + " - " + e.getLocalizedMessage(), e);
+		}
+
+		LOGGER.debug("Cached " + index.size() + " subjects in " + position + " bytes");
+	}
+
+	/**
+	 * Reads the triples of a subject from all of its runs.
+	 *
+	 * @param uri the URI of the subject
+	 * @return the triples, in source order
+	 */
+	synchronized List<Triple> get(String uri) {
+		final Node subject = Node.createURI(uri);
+		final List<Triple> triples = new ArrayList<Triple>();
+		List<byte[]> runs = new ArrayList<byte[]>();
+
+		try {
+			for (long offset = index.get(Fingerprints.hash(uri), NONE); offset != NONE;) {
+				in.seek(offset);
+				offset = in.readLong();
+
+				byte[] bytes = new byte[in.readInt()];
+				in.readFully(bytes);
+				runs.add(0, bytes);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to read " + file + " - " + e.getLocalizedMessage(), e);
+		}
+
+		for (byte[] run : runs) {
+			RDFDataMgr.parse(new StreamRDFBase() {
+				@Override
+				public void triple(Triple triple) {
+					// Another subject with the same hash
+					if (subject.equals(triple.getSubject())) {
+						triples.add(triple);
+					}
+				}
+			}, new ByteArrayInputStream(run), Lang.NTRIPLES);
+		}
+
+		return triples;
+	}
+
+	/**
+	 * Deletes the cache.
+	 */
+	synchronized void close() {
+		try {
+			if (out != null) {
+				out.close();
+			}
+
+			if (in != null) {
+				in.close();
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Unable to close " + file + " - " + e.getLocalizedMessage());
+		}
+
+		file.delete();
+	}
+}
@@ -0,0 +1,100 @@
+package sf.net.plugin.rdf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.riot.system.StreamRDFBase;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.Quad;
+import com.iqser.core.exception.IQserException;
+
+/**
+ * Groups a stream of triples by subject. Consecutive triples with the same subject are collected
+ * and passed to a {@link SubjectHandler} as soon as the subject changes, so only the triples of
+ * one subject are held in memory at a time.
+ * <p>
+ * Sources should be ordered by subject (e.g. sorted N-Triples dumps). A subject that appears
+ * again later in the stream is handed over a second time with the remaining triples only.
+ */
+class SubjectGrouper extends StreamRDFBase {
+
+	private final SubjectHandler handler;
+
+	private Node subject = null;
+	private List<Triple> triples = new ArrayList<Triple>();
+
+	SubjectGrouper(SubjectHandler handler) {
+		this.handler = handler;
+	}
+
+	/**
+	 * Parses the RDF source at the given URL and passes each subject to the handler.
+	 *
+	 * @param url the URL of the RDF source
+	 * @param handler the handler for the subjects
+	 * @throws IQserException if the handler failed
+	 */
+	static void parse(String url, SubjectHandler handler) throws IQserException {
+		try {
+			SourceStreams.parse(new SubjectGrouper(handler), url);
+		} catch (HandlerException e) {
+			throw e.getCause();
+		}
+	}
+
+	@Override
+	public void triple(Triple triple) {
+		if (subject != null && !subject.equals(triple.getSubject())) {
+			flush();
+		}
+
+		subject = triple.getSubject();
+		triples.add(triple);
+	}
+
+	@Override
+	public void quad(Quad quad) {
+		triple(quad.asTriple());
+	}
+
+	@Override
+	public void finish() {
+		flush();
+	}
+
+	private void flush() {
+		if (subject == null) {
+			return;
+		}
+
+		List<Triple> group = triples;
+
+		subject = null;
+		triples = new ArrayList<Triple>();
+
+		try {
+			handler.handle(group.get(0).getSubject(), group);
+		} catch (IQserException e) {
+			throw new HandlerException(e);
+		}
+	}
+
+	/**
+	 * Carries a handler failure through the parser, which only allows unchecked exceptions.
+	 */
+	static class HandlerException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		HandlerException(IQserException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized IQserException getCause() {
+			return (IQserException) super.getCause();
+		}
+	}
+}
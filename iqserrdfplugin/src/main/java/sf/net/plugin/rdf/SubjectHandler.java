@@ -0,0 +1,22 @@
+package sf.net.plugin.rdf;
+
+import java.util.List;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.iqser.core.exception.IQserException;
+
+/**
+ * Callback for the triples of a single subject, as emitted by a {@link SubjectGrouper}.
+ */
+interface SubjectHandler {
+
+	/**
+	 * Handles all consecutive triples of one subject.
+	 *
+	 * @param subject the subject node
+	 * @param triples the triples of the subject, in source order
+	 * @throws IQserException if the subject could not be passed to the GIN core
+	 */
+	void handle(Node subject, List<Triple> triples) throws IQserException;
+}
@@ -0,0 +1,159 @@
+package sf.net.plugin.rdf;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.shared.Lock;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+
+/**
+ * Walks the URI subjects of a model in the order of its storage: the subject index of an in-memory
+ * graph, the SPO index of TDB or the dictionary order of a {@link CompactGraph}. These keep the
+ * triples of a subject together, so the subjects are walked without sorting them or holding them
+ * in memory. The order is not stable between two loads of the same source, so a walk resumed from
+ * a {@link SyncCheckpoint} passes over the subjects processed before instead of counting them.
+ * <p>
+ * The graphs of a union are walked one after the other rather than through the union, which
+ * would remember every triple to drop those contained in several graphs. Only the hashes of the
+ * subjects walked are remembered, to skip subjects contained in several graphs.
+ * <p>
+ * A walk may be kept open between the slices of a synchronization, as long as the model does not
+ * change.
+ */
+class SubjectWalk implements Iterator<Resource> {
+
+	private final Model model;
+	private final Iterator<Graph> graphs;
+
+	// Hashed URIs of the subjects walked, null if the triples of a subject are stored together
+	private final LongHashSet walked;
+
+	// Subjects processed in the lap, or null
+	private final SyncCheckpoint checkpoint;
+
+	// Subjects taken but not processed, they are walked again first
+	private final LinkedList<Resource> pending = new LinkedList<Resource>();
+
+	private ExtendedIterator<Triple> triples = null;
+	private Node last = null;
+	private Resource next = null;
+
+	SubjectWalk(Model model) {
+		this(model, null);
+	}
+
+	/**
+	 * @param model the model
+	 * @param checkpoint the checkpoint of the subjects to pass over or null
+	 */
+	SubjectWalk(Model model, SyncCheckpoint checkpoint) {
+		this.model = model;
+		this.checkpoint = checkpoint;
+
+		List<Graph> parts = GraphPartitions.parts(model.getGraph());
+		walked = parts.size() > 1 ? new LongHashSet() : null;
+		graphs = parts.iterator();
+	}
+
+	/**
+	 * Returns subjects that were taken but not processed to the walk. They are walked again, in
+	 * the given order, before the remaining subjects.
+	 *
+	 * @param subjects the subjects
+	 */
+	void pushBack(List<Resource> subjects) {
+		pending.addAll(0, subjects);
+	}
+
+	public boolean hasNext() {
+		if (next != null || !pending.isEmpty()) {
+			return true;
+		}
+
+		model.enterCriticalSection(Lock.READ);
+
+		try {
+			while (nextTriples()) {
+				Node subject = triples.next().getSubject();
+
+				if (subject.equals(last)) {
+					continue;
+				}
+
+				last = subject;
+
+				if (!subject.isURI()) {
+					continue;
+				}
+
+				long hash = Fingerprints.hash(subject.getURI());
+
+				if ((walked == null || walked.add(hash)) && (checkpoint == null || !checkpoint.isProcessed(hash))) {
+					next = model.wrapAsResource(subject);
+					return true;
+				}
+			}
+		} finally {
+			model.leaveCriticalSection();
+		}
+
+		return false;
+	}
+
+	/**
+	 * Moves on to the next graph once the triples of a graph are walked.
+	 *
+	 * @return true, if a graph has triples left
+	 */
+	private boolean nextTriples() {
+		while (triples == null || !triples.hasNext()) {
+			if (!graphs.hasNext()) {
+				return false;
+			}
+
+			if (triples != null) {
+				triples.close();
+			}
+
+			triples = graphs.next().find(Node.ANY, Node.ANY, Node.ANY);
+			last = null;
+		}
+
+		return true;
+	}
+
+	public Resource next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		if (!pending.isEmpty()) {
+			return pending.removeFirst();
+		}
+
+		Resource current = next;
+		next = null;
+
+		return current;
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Releases the iterator of the graph.
+	 */
+	void close() {
+		if (triples != null) {
+			triples.close();
+		}
+	}
+}
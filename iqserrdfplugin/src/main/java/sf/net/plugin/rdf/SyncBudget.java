@@ -0,0 +1,49 @@
+package sf.net.plugin.rdf;
+
+/**
+ * Limits the time and the number of subjects of one synchronization slice. A limit of 0 or less
+ * means unlimited.
+ */
+class SyncBudget {
+
+	private final boolean timed;
+	private final long deadline;
+	private final long maxResources;
+
+	private long resources = 0;
+
+	/**
+	 * @param maxMillis the maximum duration of the slice, starting now
+	 * @param maxResources the maximum number of subjects of the slice
+	 */
+	SyncBudget(long maxMillis, long maxResources) {
+		this.timed = maxMillis > 0;
+		this.deadline = System.nanoTime() + maxMillis * 1000000L;
+		this.maxResources = maxResources;
+	}
+
+	/**
+	 * @return a budget without limits
+	 */
+	static SyncBudget unlimited() {
+		return new SyncBudget(0, 0);
+	}
+
+	/**
+	 * @return true, if the time of the budget is up
+	 */
+	boolean isOverdue() {
+		return timed && System.nanoTime() - deadline >= 0;
+	}
+
+	/**
+	 * Counts a synchronized subject.
+	 *
+	 * @return true, if the budget is used up
+	 */
+	boolean spend() {
+		resources++;
+
+		return (maxResources > 0 && resources >= maxResources) || isOverdue();
+	}
+}
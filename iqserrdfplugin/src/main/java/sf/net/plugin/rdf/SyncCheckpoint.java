@@ -0,0 +1,242 @@
+package sf.net.plugin.rdf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Durable progress of a synchronization lap, see {@link SubjectWalk}. The checkpoint remembers the
+ * hashed URIs of the processed subjects, so a resumed synchronization passes over them whatever
+ * the order of the reloaded model is. The hashes are appended to a file next to the checkpoint on
+ * each save, the checkpoint itself keeps the source and the last processed subject. The checkpoint
+ * belongs to a source and is ignored, if the source URL changed. Without a file only the number of
+ * processed subjects is kept, e.g. between the slices of a synchronization.
+ */
+class SyncCheckpoint {
+
+	private static Logger LOGGER = Logger.getLogger(SyncCheckpoint.class);
+
+	private static final String SOURCE = "modelURL";
+	private static final String CURSOR = "cursor";
+	private static final String PROCESSED = "processed";
+
+	private final File file;
+	private final File subjects;
+	private final String source;
+	private final int interval;
+
+	// Hashed URIs of the processed subjects, null without a file
+	private LongHashSet done;
+
+	// Hashes processed since the last save
+	private final long[] unsaved;
+	private int unsavedCount = 0;
+
+	private String cursor = null;
+	private long processed = 0;
+
+	/**
+	 * Opens the checkpoint in the given file. A missing or unreadable file, or one of another
+	 * source, starts from the first subject.
+	 *
+	 * @param file the file of the checkpoint or null
+	 * @param source the URL of the source
+	 * @param interval the number of subjects between two saves
+	 */
+	SyncCheckpoint(File file, String source, int interval) {
+		this.file = file;
+		this.subjects = file != null ? new File(file.getPath() + ".subjects") : null;
+		this.source = source;
+		this.interval = Math.max(1, interval);
+		this.done = file != null ? new LongHashSet() : null;
+		this.unsaved = new long[file != null ? this.interval : 0];
+
+		if (file != null && !load() && subjects.exists() && !subjects.delete()) {
+			LOGGER.warn("Unable to delete checkpoint " + subjects);
+		}
+	}
+
+	/**
+	 * Reads the checkpoint and the hashes of its processed subjects.
+	 *
+	 * @return true, if the checkpoint belongs to the source
+	 */
+	private boolean load() {
+		if (!file.exists()) {
+			return false;
+		}
+
+		Properties checkpoint = new Properties();
+
+		try {
+			InputStream in = new FileInputStream(file);
+
+			try {
+				checkpoint.load(in);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Unable to read " + file + " - " + e.getLocalizedMessage());
+			return false;
+		}
+
+		if (!String.valueOf(source).equals(checkpoint.getProperty(SOURCE))) {
+			LOGGER.info("Ignoring checkpoint " + file + " of another source");
+			return false;
+		}
+
+		if (subjects.exists()) {
+			try {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(subjects), 1 << 16));
+
+				try {
+					// Hashes appended by a save that was interrupted are kept, their subjects were delivered before
+					for (long i = subjects.length() / 8; i > 0; i--) {
+						done.add(in.readLong());
+					}
+				} finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				LOGGER.warn("Unable to read " + subjects + " - " + e.getLocalizedMessage());
+				done = new LongHashSet();
+				return false;
+			}
+		}
+
+		cursor = checkpoint.getProperty(CURSOR);
+		processed = done.size();
+
+		return true;
+	}
+
+	/**
+	 * @return the URI of the last processed subject or null, if no subject was processed
+	 */
+	String getCursor() {
+		return cursor;
+	}
+
+	/**
+	 * @return the number of subjects processed since the synchronization started
+	 */
+	long getProcessed() {
+		return processed;
+	}
+
+	/**
+	 * @param hash the hashed URI of a subject
+	 * @return true, if the subject was processed since the lap started
+	 */
+	boolean isProcessed(long hash) {
+		return done != null && done.contains(hash);
+	}
+
+	/**
+	 * Records a processed subject.
+	 *
+	 * @param uri the URI of the processed subject
+	 * @return true, if the checkpoint is due to be saved
+	 */
+	boolean processed(String uri) {
+		cursor = uri;
+		processed++;
+
+		if (done == null) {
+			return false;
+		}
+
+		long hash = Fingerprints.hash(uri);
+
+		if (done.add(hash)) {
+			unsaved[unsavedCount++] = hash;
+		}
+
+		return unsavedCount >= interval;
+	}
+
+	/**
+	 * Writes the checkpoint. The new hashes are appended first and the properties are written to a
+	 * temporary file, so a crash while saving keeps the previous checkpoint.
+	 */
+	void save() {
+		if (file == null || cursor == null) {
+			return;
+		}
+
+		Properties checkpoint = new Properties();
+		checkpoint.setProperty(SOURCE, String.valueOf(source));
+		checkpoint.setProperty(CURSOR, cursor);
+		checkpoint.setProperty(PROCESSED, String.valueOf(processed));
+
+		File tmp = new File(file.getPath() + ".tmp");
+
+		try {
+			DataOutputStream hashes = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(subjects, true)));
+
+			try {
+				for (int i = 0; i < unsavedCount; i++) {
+					hashes.writeLong(unsaved[i]);
+				}
+			} finally {
+				hashes.close();
+			}
+
+			unsavedCount = 0;
+
+			OutputStream out = new FileOutputStream(tmp);
+
+			try {
+				checkpoint.store(out, "Synchronization checkpoint");
+			} finally {
+				out.close();
+			}
+
+			if (file.exists() && !file.delete()) {
+				throw new IOException("unable to replace " + file);
+			}
+
+			if (!tmp.renameTo(file)) {
+				throw new IOException("unable to rename " + tmp);
+			}
+		} catch (IOException e) {
+			LOGGER.error("Unable to save checkpoint to " + file + " - " + e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Forgets the processed subjects, e.g. after a complete synchronization. The next one starts
+	 * from the first subject.
+	 */
+	void complete() {
+		cursor = null;
+		processed = 0;
+		unsavedCount = 0;
+
+		if (file == null) {
+			return;
+		}
+
+		done = new LongHashSet();
+
+		// The hashes go first, a checkpoint left without them starts over
+		if (subjects.exists() && !subjects.delete()) {
+			LOGGER.warn("Unable to delete checkpoint " + subjects);
+		}
+
+		if (file.exists() && !file.delete()) {
+			LOGGER.warn("Unable to delete checkpoint " + file);
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package sf.net.plugin.rdf;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.log4j.Logger;
+
+import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.tdb.TDB;
+import com.hp.hpl.jena.tdb.TDBFactory;
+import com.hp.hpl.jena.tdb.TDBLoader;
+
+/**
+ * Persistent on-disk storage of the RDF model in a TDB dataset. The source is bulk loaded once
+ * and the dataset is reopened on later starts, as long as the source URL did not change.
+ * TDB memory-maps its indexes, so lookups are served from the page cache instead of the heap.
+ */
+class TdbStore {
+
+	private static Logger LOGGER = Logger.getLogger(TdbStore.class);
+
+	private static final String SOURCE_FILE = "source.properties";
+	private static final String SOURCE_URL = "modelURL";
+
+	private TdbStore() {
+	}
+
+	/**
+	 * Opens the TDB dataset in the given directory and loads the source, if it is not yet loaded.
+	 *
+	 * @param directory the storage directory
+	 * @param modelURL the URL of the RDF source
+	 * @return the dataset
+	 */
+	static Dataset open(String directory, String modelURL) {
+		File dir = new File(directory);
+		dir.mkdirs();
+
+		Dataset dataset = TDBFactory.createDataset(dir.getAbsolutePath());
+		Model model = dataset.getDefaultModel();
+		File sourceFile = new File(dir, SOURCE_FILE);
+
+		if (!model.isEmpty() && modelURL.equals(readSource(sourceFile))) {
+			LOGGER.info("Reopening TDB dataset " + dir + " for " + modelURL);
+			return dataset;
+		}
+
+		// Drop the marker first, so an interrupted load is repeated on the next start
+		sourceFile.delete();
+
+		if (!model.isEmpty()) {
+			LOGGER.info("Source of TDB dataset " + dir + " changed - removing the old model");
+			model.removeAll();
+		}
+
+		LOGGER.info("Bulk loading " + modelURL + " into TDB dataset " + dir);
+
+		if (SourceStreams.isCompressed(modelURL)) {
+			// The bulk loader reads plain files only
+			SourceStreams.parse(StreamRDFLib.graph(model.getGraph()), modelURL);
+		} else {
+			TDBLoader.loadModel(model, modelURL);
+		}
+
+		TDB.sync(dataset);
+
+		writeSource(sourceFile, modelURL);
+
+		return dataset;
+	}
+
+	private static String readSource(File sourceFile) {
+		if (!sourceFile.exists()) {
+			return null;
+		}
+
+		Properties source = new Properties();
+
+		try {
+			InputStream in = new FileInputStream(sourceFile);
+
+			try {
+				source.load(in);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Unable to read " + sourceFile + " - " + e.getLocalizedMessage());
+		}
+
+		return source.getProperty(SOURCE_URL);
+	}
+
+	private static void writeSource(File sourceFile, String modelURL) {
+		Properties source = new Properties();
+		source.setProperty(SOURCE_URL, modelURL);
+
+		try {
+			OutputStream out = new FileOutputStream(sourceFile);
+
+			try {
+				source.store(out, "Source of the TDB dataset");
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Unable to write " + sourceFile + " - " + e.getLocalizedMessage());
+		}
+	}
+}
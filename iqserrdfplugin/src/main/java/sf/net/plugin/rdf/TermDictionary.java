@@ -0,0 +1,105 @@
+package sf.net.plugin.rdf;
+
+import java.util.Arrays;
+
+import com.hp.hpl.jena.graph.Node;
+
+/**
+ * Assigns dense int ids to RDF terms. Each distinct term is held once; the lookup table is an
+ * open addressing array of ids, so it costs 4 bytes per slot instead of a hash map entry.
+ */
+class TermDictionary {
+
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private Node[] terms = new Node[1024];
+	private int size = 0;
+
+	// Ids plus one, 0 marks a free slot
+	private int[] table = new int[2048];
+	private int mask = table.length - 1;
+
+	int size() {
+		return size;
+	}
+
+	Node get(int id) {
+		return terms[id];
+	}
+
+	/**
+	 * @return the id of the term or -1, if it is not in the dictionary
+	 */
+	int lookup(Node node) {
+		for (int slot = mix(node.hashCode()) & mask;; slot = (slot + 1) & mask) {
+			int id = table[slot] - 1;
+
+			if (id < 0) {
+				return -1;
+			}
+
+			if (terms[id].equals(node)) {
+				return id;
+			}
+		}
+	}
+
+	/**
+	 * @return the id of the term, added if needed
+	 */
+	int intern(Node node) {
+		int slot = mix(node.hashCode()) & mask;
+
+		for (;; slot = (slot + 1) & mask) {
+			int id = table[slot] - 1;
+
+			if (id < 0) {
+				break;
+			}
+
+			if (terms[id].equals(node)) {
+				return id;
+			}
+		}
+
+		if (size == terms.length) {
+			terms = Arrays.copyOf(terms, Math.max(16, terms.length * 2));
+		}
+
+		terms[size] = node;
+		table[slot] = ++size;
+
+		if (size > table.length * LOAD_FACTOR) {
+			rehash(table.length * 2);
+		}
+
+		return size - 1;
+	}
+
+	/**
+	 * Releases the unused capacity once all terms are known.
+	 */
+	void trim() {
+		terms = Arrays.copyOf(terms, size);
+	}
+
+	private void rehash(int capacity) {
+		table = new int[capacity];
+		mask = capacity - 1;
+
+		for (int id = 0; id < size; id++) {
+			int slot = mix(terms[id].hashCode()) & mask;
+
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+
+			table[slot] = id + 1;
+		}
+	}
+
+	private static int mix(int h) {
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
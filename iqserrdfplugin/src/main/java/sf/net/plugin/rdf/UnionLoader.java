@@ -0,0 +1,137 @@
+package sf.net.plugin.rdf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.compose.MultiUnion;
+import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.query.DatasetFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+
+/**
+ * Loads several RDF sources concurrently, each into a graph of its own, and combines them into a
+ * read-only union. Statements contained in several sources, e.g. shared vocabularies, appear once
+ * in the union.
+ */
+class UnionLoader {
+
+	private static Logger LOGGER = Logger.getLogger(UnionLoader.class);
+
+	private final List<String> urls;
+	private final int parallelism;
+	private final int loadThreads;
+
+	/**
+	 * @param urls the URLs of the sources, files, HTTP resources or SPARQL graph query URLs
+	 * @param parallelism the maximum number of sources loaded at the same time
+	 * @param loadThreads the threads parsing a local N-Triples source
+	 */
+	UnionLoader(List<String> urls, int parallelism, int loadThreads) {
+		this.urls = urls;
+		this.parallelism = Math.max(1, Math.min(parallelism, urls.size()));
+		this.loadThreads = loadThreads;
+	}
+
+	/**
+	 * Loads all sources. Every source is loaded, even if others fail, and the failures are
+	 * reported together afterwards.
+	 *
+	 * @return the union of the sources
+	 */
+	Model load() {
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+		Map<String, Future<Graph>> loads = new LinkedHashMap<String, Future<Graph>>();
+
+		try {
+			for (String url : urls) {
+				loads.put(url, executor.submit(new LoadTask(url)));
+			}
+
+			MultiUnion union = new MultiUnion();
+			List<String> failures = new ArrayList<String>();
+			RuntimeException failure = null;
+
+			for (Map.Entry<String, Future<Graph>> load : loads.entrySet()) {
+				try {
+					union.addGraph(load.getValue().get());
+				} catch (ExecutionException e) {
+					LOGGER.error("Unable to load " + load.getKey() + " - " + e.getCause().getLocalizedMessage());
+					failures.add(load.getKey());
+
+					if (failure == null) {
+						failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+								: new IllegalStateException(e.getCause());
+					}
+				}
+			}
+
+			if (failure != null) {
+				// A missing source would remove all its contents in the next housekeeping
+				throw new IllegalStateException("Unable to load " + failures, failure);
+			}
+
+			return ModelFactory.createModelForGraph(union);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while loading", e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Splits a list of URLs separated by white space.
+	 */
+	static List<String> split(String list) {
+		List<String> urls = new ArrayList<String>();
+
+		for (String url : list.trim().split("\\s+")) {
+			if (url.length() > 0) {
+				urls.add(url);
+			}
+		}
+
+		return urls;
+	}
+
+	/**
+	 * Loads a single source.
+	 */
+	private class LoadTask implements Callable<Graph> {
+
+		private final String url;
+
+		LoadTask(String url) {
+			this.url = url;
+		}
+
+		public Graph call() throws IOException {
+			long start = System.currentTimeMillis();
+			Graph graph;
+
+			if (loadThreads > 1 && ParallelNTriplesLoader.accepts(url)) {
+				Dataset dataset = DatasetFactory.createMem();
+				new ParallelNTriplesLoader(loadThreads).load(url, dataset);
+				graph = GraphPartitions.union(dataset).getGraph();
+			} else {
+				graph = GraphPartitions.union(GraphPartitions.load(url)).getGraph();
+			}
+
+			LOGGER.info("Loaded " + url + " (" + graph.size() + " triples) in " + (System.currentTimeMillis() - start) + " ms");
+
+			return graph;
+		}
+	}
+}
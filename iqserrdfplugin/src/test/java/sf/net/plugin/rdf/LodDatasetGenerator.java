@@ -0,0 +1,373 @@
+package sf.net.plugin.rdf;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.writer.WriterStreamRDFBlocks;
+
+import com.hp.hpl.jena.datatypes.RDFDatatype;
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.AnonId;
+
+/**
+ * Generates synthetic linked data with the shapes of real sources: skewed subject degrees and link
+ * targets, labels in many languages, blank nodes, rdf:Seq containers and very long literals. The
+ * output only depends on the seed and the settings, so datasets can be compared between runs.
+ */
+public class LodDatasetGenerator {
+
+	public static final String NS = "http://lod.example.org/resource/";
+	public static final String VOCAB = "http://lod.example.org/vocab#";
+
+	private static final String RDF = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+	private static final String RDFS = "http://www.w3.org/2000/01/rdf-schema#";
+
+	private static final String[] LANGUAGES = { "en", "de", "fr", "es", "it", "nl", "pt", "pl", "ru", "ja", "zh", "ar" };
+
+	private static final String[] WORDS = { "river", "mountain", "city", "museum", "station", "library", "bridge",
+			"castle", "forest", "harbour", "school", "church", "market", "garden", "tower", "valley" };
+
+	private static final Node RDF_TYPE = Node.createURI(RDF + "type");
+	private static final Node RDF_SEQ = Node.createURI(RDF + "Seq");
+	private static final Node RDFS_LABEL = Node.createURI(RDFS + "label");
+
+	private final long seed;
+	private final int subjects;
+
+	private int minDegree = 3;
+	private int maxDegree = 500;
+	private double degreeSkew = 1.5;
+	private int maxLanguages = LANGUAGES.length;
+	private int seqEvery = 50;
+	private int longLiteralEvery = 100;
+	private int longLiteralLength = 64 * 1024;
+	private double blankNodeRate = 0.2;
+
+	/**
+	 * @param seed the seed of the random numbers
+	 * @param subjects the number of named subjects
+	 */
+	public LodDatasetGenerator(long seed, int subjects) {
+		this.seed = seed;
+		this.subjects = subjects;
+	}
+
+	/**
+	 * Sets the bounds of the number of statements per subject. Degrees follow a Pareto
+	 * distribution, a lower skew gives more subjects with a high degree.
+	 */
+	public LodDatasetGenerator setDegree(int minDegree, int maxDegree, double degreeSkew) {
+		this.minDegree = minDegree;
+		this.maxDegree = maxDegree;
+		this.degreeSkew = degreeSkew;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of language tagged labels per subject.
+	 */
+	public LodDatasetGenerator setMaxLanguages(int maxLanguages) {
+		this.maxLanguages = Math.min(maxLanguages, LANGUAGES.length);
+		return this;
+	}
+
+	/**
+	 * Makes every n-th subject a rdf:Seq container, 0 for none.
+	 */
+	public LodDatasetGenerator setSeqEvery(int seqEvery) {
+		this.seqEvery = seqEvery;
+		return this;
+	}
+
+	/**
+	 * Gives about every n-th subject a literal of up to the given length, 0 for none.
+	 */
+	public LodDatasetGenerator setLongLiterals(int longLiteralEvery, int longLiteralLength) {
+		this.longLiteralEvery = longLiteralEvery;
+		this.longLiteralLength = longLiteralLength;
+		return this;
+	}
+
+	/**
+	 * Sets the share of subjects with a blank node, e.g. an address.
+	 */
+	public LodDatasetGenerator setBlankNodeRate(double blankNodeRate) {
+		this.blankNodeRate = blankNodeRate;
+		return this;
+	}
+
+	public int getSubjects() {
+		return subjects;
+	}
+
+	/**
+	 * @return the URI of the subject with the given index
+	 */
+	public static String uri(int subject) {
+		return NS + "R" + subject;
+	}
+
+	/**
+	 * Writes the dataset.
+	 *
+	 * @param file the output file
+	 * @param lang {@link Lang#NTRIPLES}, {@link Lang#TURTLE} or {@link Lang#RDFXML}
+	 * @return the number of triples written
+	 */
+	public long write(File file, Lang lang) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+
+		try {
+			return write(out, lang);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes the dataset, grouped by subject.
+	 *
+	 * @param out the output stream, not closed
+	 * @param lang {@link Lang#NTRIPLES}, {@link Lang#TURTLE} or {@link Lang#RDFXML}
+	 * @return the number of triples written
+	 */
+	public long write(OutputStream out, Lang lang) throws IOException {
+		GroupWriter writer;
+
+		if (lang == Lang.RDFXML) {
+			writer = new RdfXmlWriter(out);
+		} else {
+			writer = new StreamWriter(lang == Lang.TURTLE ? new WriterStreamRDFBlocks(out) : StreamRDFLib.writer(out));
+		}
+
+		Random random = new Random(seed);
+		long triples = 0;
+
+		writer.start();
+
+		for (int i = 0; i < subjects; i++) {
+			List<Triple> blank = new ArrayList<Triple>();
+			List<Triple> group = generate(i, random, blank);
+
+			writer.write(group);
+			triples += group.size();
+
+			if (!blank.isEmpty()) {
+				writer.write(blank);
+				triples += blank.size();
+			}
+		}
+
+		writer.finish();
+
+		return triples;
+	}
+
+	private List<Triple> generate(int i, Random random, List<Triple> blank) {
+		Node subject = Node.createURI(uri(i));
+		List<Triple> triples = new ArrayList<Triple>();
+
+		if (seqEvery > 0 && i % seqEvery == seqEvery - 1) {
+			triples.add(new Triple(subject, RDF_TYPE, RDF_SEQ));
+
+			int members = 1 + random.nextInt(20);
+
+			for (int m = 1; m <= members; m++) {
+				triples.add(new Triple(subject, Node.createURI(RDF + "_" + m), Node.createURI(uri(skewed(random, subjects)))));
+			}
+
+			return triples;
+		}
+
+		int degree = degree(random);
+
+		triples.add(new Triple(subject, RDF_TYPE, Node.createURI(VOCAB + "Class" + skewed(random, 50))));
+
+		String name = WORDS[random.nextInt(WORDS.length)] + " " + i;
+		int languages = 1 + random.nextInt(maxLanguages);
+
+		for (int l = 0; l < languages; l++) {
+			triples.add(new Triple(subject, RDFS_LABEL, Node.createLiteral(name + " (" + LANGUAGES[l] + ")", LANGUAGES[l], false)));
+		}
+
+		if (longLiteralEvery > 0 && random.nextInt(longLiteralEvery) == 0) {
+			triples.add(new Triple(subject, Node.createURI(VOCAB + "abstract"), literal(text(random, 1 + random.nextInt(longLiteralLength)), null)));
+		}
+
+		if (random.nextDouble() < blankNodeRate) {
+			Node address = Node.createAnon(new AnonId("a" + i));
+
+			triples.add(new Triple(subject, Node.createURI(VOCAB + "address"), address));
+			blank.add(new Triple(address, Node.createURI(VOCAB + "street"), literal(WORDS[random.nextInt(WORDS.length)] + " street " + random.nextInt(200), null)));
+			blank.add(new Triple(address, Node.createURI(VOCAB + "postcode"), literal(String.valueOf(10000 + random.nextInt(90000)), null)));
+			blank.add(new Triple(address, Node.createURI(VOCAB + "city"), Node.createURI(uri(skewed(random, subjects)))));
+		}
+
+		while (triples.size() < degree) {
+			Node predicate = Node.createURI(VOCAB + "p" + skewed(random, 200));
+
+			switch (random.nextInt(5)) {
+			case 0:
+				triples.add(new Triple(subject, predicate, literal(String.valueOf(random.nextInt(100000)), XSDDatatype.XSDint)));
+				break;
+			case 1:
+				triples.add(new Triple(subject, predicate, literal(String.valueOf(random.nextDouble()), XSDDatatype.XSDdouble)));
+				break;
+			case 2:
+				triples.add(new Triple(subject, predicate, literal(String.format("%04d-%02d-%02d", 1900 + random.nextInt(120), 1 + random.nextInt(12), 1 + random.nextInt(28)), XSDDatatype.XSDdate)));
+				break;
+			default:
+				// Links point to hubs more often than to other subjects
+				triples.add(new Triple(subject, predicate, Node.createURI(uri(skewed(random, subjects)))));
+				break;
+			}
+		}
+
+		return triples;
+	}
+
+	private int degree(Random random) {
+		double pareto = minDegree / Math.pow(1.0 - random.nextDouble(), 1.0 / degreeSkew);
+		return (int) Math.min(maxDegree, pareto);
+	}
+
+	// Index in [0, n) with small indexes much more likely
+	private static int skewed(Random random, int n) {
+		double u = random.nextDouble();
+		return (int) (n * u * u * u);
+	}
+
+	private static String text(Random random, int length) {
+		StringBuilder text = new StringBuilder(length + 16);
+
+		while (text.length() < length) {
+			text.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(8) == 0 ? ". " : " ");
+		}
+
+		text.setLength(length);
+
+		return text.toString();
+	}
+
+	private static Node literal(String lexical, RDFDatatype datatype) {
+		return Node.createLiteral(lexical, null, datatype);
+	}
+
+	/**
+	 * Writes the triples of one subject at a time.
+	 */
+	private interface GroupWriter {
+
+		void start() throws IOException;
+
+		void write(List<Triple> group) throws IOException;
+
+		void finish() throws IOException;
+	}
+
+	private static class StreamWriter implements GroupWriter {
+
+		private final StreamRDF stream;
+
+		StreamWriter(StreamRDF stream) {
+			this.stream = stream;
+		}
+
+		public void start() {
+			stream.start();
+		}
+
+		public void write(List<Triple> group) {
+			for (Triple triple : group) {
+				stream.triple(triple);
+			}
+		}
+
+		public void finish() {
+			stream.finish();
+		}
+	}
+
+	/**
+	 * Plain RDF/XML with one rdf:Description per subject. Jena only writes RDF/XML from a model,
+	 * which would hold the whole dataset in memory.
+	 */
+	private static class RdfXmlWriter implements GroupWriter {
+
+		private final Writer out;
+
+		RdfXmlWriter(OutputStream out) throws IOException {
+			this.out = new OutputStreamWriter(out, "UTF-8");
+		}
+
+		public void start() throws IOException {
+			out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			out.write("<rdf:RDF xmlns:rdf=\"" + RDF + "\" xmlns:rdfs=\"" + RDFS + "\" xmlns:lod=\"" + VOCAB + "\">\n");
+		}
+
+		public void write(List<Triple> group) throws IOException {
+			Node subject = group.get(0).getSubject();
+
+			if (subject.isBlank()) {
+				out.write("  <rdf:Description rdf:nodeID=\"" + subject.getBlankNodeLabel() + "\">\n");
+			} else {
+				out.write("  <rdf:Description rdf:about=\"" + escape(subject.getURI()) + "\">\n");
+			}
+
+			for (Triple triple : group) {
+				String element = qname(triple.getPredicate().getURI());
+				Node object = triple.getObject();
+
+				out.write("    <" + element);
+
+				if (object.isURI()) {
+					out.write(" rdf:resource=\"" + escape(object.getURI()) + "\"/>\n");
+				} else if (object.isBlank()) {
+					out.write(" rdf:nodeID=\"" + object.getBlankNodeLabel() + "\"/>\n");
+				} else {
+					if (object.getLiteralLanguage().length() > 0) {
+						out.write(" xml:lang=\"" + object.getLiteralLanguage() + "\"");
+					} else if (object.getLiteralDatatypeURI() != null) {
+						out.write(" rdf:datatype=\"" + object.getLiteralDatatypeURI() + "\"");
+					}
+
+					out.write(">" + escape(object.getLiteralLexicalForm()) + "</" + element + ">\n");
+				}
+			}
+
+			out.write("  </rdf:Description>\n");
+		}
+
+		public void finish() throws IOException {
+			out.write("</rdf:RDF>\n");
+			out.flush();
+		}
+
+		private static String qname(String uri) {
+			if (uri.startsWith(RDF)) {
+				return "rdf:" + uri.substring(RDF.length());
+			} else if (uri.startsWith(RDFS)) {
+				return "rdfs:" + uri.substring(RDFS.length());
+			}
+
+			return "lod:" + uri.substring(VOCAB.length());
+		}
+
+		private static String escape(String text) {
+			return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+		}
+	}
+}
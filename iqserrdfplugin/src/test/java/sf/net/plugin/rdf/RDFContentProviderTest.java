@@ -1,18 +1,43 @@
 package sf.net.plugin.rdf;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.junit.Test;
 
+import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.query.DatasetFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Resource;
 import com.iqser.core.model.Attribute;
 import com.iqser.core.model.Content;
 import com.iqser.core.model.Parameter;
@@ -37,72 +62,970 @@ public class RDFContentProviderTest extends ContentProviderTestCase {
 	private static final String ATTRIBUTE_RDFNAMESPACE = "RDFNAMESPACE";
 	private static final String ATTRIBUTE_CONTENT_TYPE = "Animal";
 
+	private static final String RDF_NS = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+	private static final String ZOO_NS = "http://www.some-ficticious-zoo.com/rdf#";
+
+	// A sequence and a lion with typed, untyped and resource values, in N-Triples
+	private static final String MAPPED_ANIMALS = "<urn:animals:data> <" + RDF_NS + "type> <" + RDF_NS + "Seq> .\n"
+			+ "<urn:animals:data> <" + RDF_NS + "_1> <urn:animals:lion> .\n"
+			+ "<urn:animals:lion> <" + RDF_NS + "type> <" + ZOO_NS + "Animal> .\n"
+			+ "<urn:animals:lion> <" + ZOO_NS + "class> \"Mammal\" .\n"
+			+ "<urn:animals:lion> <" + ZOO_NS + "species> \"Panthera leo\" .\n"
+			+ "<urn:animals:lion> <" + ZOO_NS + "name> \"Lion\" .\n"
+			+ "<urn:animals:lion> <" + ZOO_NS + "weight> \"190\"^^<http://www.w3.org/2001/XMLSchema#int> .\n"
+			+ "<urn:animals:lion> <" + ZOO_NS + "legs> \"4\" .\n"
+			+ "<urn:animals:lion> <" + ZOO_NS + "habitat> <urn:habitats:savanna> .\n";
+
+	/**
+	 * Test method for {@link RDFContentProvider#doSynchronization()}.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDoSynchronization() throws Exception {		
+		// The ContentProvider to test
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
+		Properties initParams = initParams(file);
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		// Add your expectations
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		this.expectsAddContents(animalContents());
+	
+		// Initialize the test
+		prepare(); 
+		providerUnderTest.init();		
+		
+		// Execute the method(s) under test
+		providerUnderTest.doSynchronization();
+		
+		// Destroy the plugin
+		providerUnderTest.destroy();
+
+		// Verify if your expectations were met
+		verify(); 
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#doSynchronization()} with several sources.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDoSynchronizationUnion() throws Exception {		
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
+		Properties initParams = initParams(file);
+		initParams.setProperty("modelURLs", new File(System.getProperty("user.dir") + "/src/test/animals.nt").toURI().toURL().toString());
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		this.expectsAddContents(animalContents());
+	
+		prepare(); 
+		providerUnderTest.init();		
+		
+		providerUnderTest.doSynchronization();
+		
+		providerUnderTest.destroy();
+
+		verify(); 
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#doSynchronization()} with batched submission.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDoSynchronizationBatched() throws Exception {		
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
+		Properties initParams = initParams(file);
+		initParams.setProperty("batchSize", "2");
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		this.expectsAddContents(animalContents());
+	
+		prepare(); 
+		providerUnderTest.init();		
+		
+		providerUnderTest.doSynchronization();
+		
+		providerUnderTest.destroy();
+
+		verify(); 
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#doSynchronization()} on several threads.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDoSynchronizationParallel() throws Exception {		
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
+		Properties initParams = initParams(file);
+		initParams.setProperty("syncThreads", "4");
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		this.expectsAddContents(animalContents());
+	
+		prepare(); 
+		providerUnderTest.init();		
+		
+		providerUnderTest.doSynchronization();
+		
+		providerUnderTest.destroy();
+
+		verify(); 
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#doSynchronization()} with fingerprints.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDoSynchronizationFingerprints() throws Exception {		
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
+		File fingerprintFile = File.createTempFile("fingerprints", ".bin");
+		fingerprintFile.delete();
+		
+		Properties initParams = initParams(file);
+		initParams.setProperty("fingerprintFile", fingerprintFile.getAbsolutePath());
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		this.expectsAddContents(animalContents());
+	
+		prepare(); 
+		providerUnderTest.init();		
+		
+		// The second run must not call the core again
+		providerUnderTest.doSynchronization();
+		providerUnderTest.doSynchronization();
+		
+		providerUnderTest.destroy();
+
+		verify(); 
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#doSynchronization()} resumed from a checkpoint.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDoSynchronizationCheckpoint() throws Exception {		
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
+		File checkpointFile = File.createTempFile("checkpoint", ".properties");
+		checkpointFile.deleteOnExit();
+		writeFile(checkpointFile, "modelURL=" + file.toURI().toURL() + "\ncursor=urn:animals:tarantula\nprocessed=2\n");
+		
+		File subjectsFile = new File(checkpointFile.getPath() + ".subjects");
+		subjectsFile.deleteOnExit();
+		DataOutputStream subjects = new DataOutputStream(new FileOutputStream(subjectsFile));
+		subjects.writeLong(Fingerprints.hash("urn:animals:lion"));
+		subjects.writeLong(Fingerprints.hash("urn:animals:tarantula"));
+		subjects.close();
+		
+		Properties initParams = initParams(file);
+		initParams.setProperty("checkpointFile", checkpointFile.getAbsolutePath());
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		// Two subjects were synchronized before the interruption
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		this.expectsAddContent(animalContent("urn:animals:hippopotamus"));
+	
+		prepare(); 
+		providerUnderTest.init();		
+		
+		providerUnderTest.doSynchronization();
+		
+		// The completed synchronization drops the checkpoint
+		assertFalse(checkpointFile.exists());
+		assertFalse(subjectsFile.exists());
+		
+		providerUnderTest.destroy();
+
+		verify(); 
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#doSynchronization()} resumed from a checkpoint after
+	 * the source was reloaded in another order.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDoSynchronizationCheckpointReload() throws Exception {		
+		String triples = readFile(new File(System.getProperty("user.dir") + "/src/test/animals.nt"));
+		File file = File.createTempFile("animals", ".nt");
+		file.deleteOnExit();
+		writeFile(file, triples);
+		
+		File checkpointFile = File.createTempFile("checkpoint", ".properties");
+		checkpointFile.delete();
+		checkpointFile.deleteOnExit();
+		
+		Properties initParams = initParams(file);
+		initParams.setProperty("checkpointFile", checkpointFile.getAbsolutePath());
+		initParams.setProperty("maxSyncResources", "2");
+		
+		// Each subject is added once, by the first provider or after the restart
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		this.expectsAddContents(animalContents());
+	
+		prepare(); 
+		
+		// The first slice stops after two of the four subjects and saves the checkpoint
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		providerUnderTest.init();		
+		providerUnderTest.doSynchronization();
+		providerUnderTest.destroy();
+		
+		assertTrue(checkpointFile.exists());
+		
+		// The restarted provider loads the source in another order
+		StringBuilder reversed = new StringBuilder();
+		
+		for (String line : triples.split("\n")) {
+			reversed.insert(0, line + '\n');
+		}
+		
+		writeFile(file, reversed.toString());
+		
+		providerUnderTest = createProvider(initParams);
+		providerUnderTest.init();		
+		providerUnderTest.doSynchronization();
+		providerUnderTest.destroy();
+		
+		assertFalse(checkpointFile.exists());
+
+		verify(); 
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#doSynchronization()} with a checkpoint that does not match the model.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDoSynchronizationCheckpointMismatch() throws Exception {		
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
+		File checkpointFile = File.createTempFile("checkpoint", ".properties");
+		checkpointFile.deleteOnExit();
+		writeFile(checkpointFile, "modelURL=" + file.toURI().toURL() + "\ncursor=urn:animals:zebra\nprocessed=2\n");
+		
+		Properties initParams = initParams(file);
+		initParams.setProperty("checkpointFile", checkpointFile.getAbsolutePath());
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		// The synchronization starts over
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		this.expectsAddContents(animalContents());
+	
+		prepare(); 
+		providerUnderTest.init();		
+		
+		providerUnderTest.doSynchronization();
+		
+		assertFalse(checkpointFile.exists());
+		
+		providerUnderTest.destroy();
+
+		verify(); 
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#doSynchronization()} with the model loaded in the background.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDoSynchronizationAsyncLoad() throws Exception {		
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
+		Properties initParams = initParams(file);
+		initParams.setProperty("load", "async");
+		initParams.setProperty("loadQueueSize", "1");
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		this.expectsAddContents(animalContents());
+	
+		prepare(); 
+		providerUnderTest.init();		
+		
+		// The subjects are synchronized while they are parsed
+		providerUnderTest.doSynchronization();
+		
+		Content content = providerUnderTest.getContent("urn:animals:lion");
+		assertEquals("urn:animals:lion", content.getContentUrl());
+		
+		providerUnderTest.destroy();
+
+		verify(); 
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#doSynchronization()} with a SPARQL graph query
+	 * loaded in the background, which is not compacted.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDoSynchronizationAsyncLoadCompact() throws Exception {		
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.nt");
+		ServerSocket server = serve("application/n-triples", readFile(file), false);
+		
+		try {
+			Properties initParams = new Properties();
+			initParams.setProperty("modelURL", "http://127.0.0.1:" + server.getLocalPort() + "/sparql");
+			initParams.setProperty("sparqlQuery", "CONSTRUCT { ?s ?p ?o } WHERE { ?s ?p ?o }");
+			initParams.setProperty("content-type", ATTRIBUTE_CONTENT_TYPE);
+			initParams.setProperty("load", "async");
+			initParams.setProperty("storage", "compact");
+			
+			RDFContentProvider providerUnderTest = createProvider(initParams);
+			
+			this.expectsGetExistingContents("provider", new LinkedList<Content>());
+			this.expectsAddContents(animalContents());
+		
+			prepare(); 
+			providerUnderTest.init();		
+			
+			providerUnderTest.doSynchronization();
+			
+			Content content = providerUnderTest.getContent("urn:animals:lion");
+			assertEquals("urn:animals:lion", content.getContentUrl());
+			
+			providerUnderTest.destroy();
+	
+			verify(); 
+		} finally {
+			server.close();
+		}
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#destroy()} while the source is loaded in the
+	 * background and stalls.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDestroyAsyncLoad() throws Exception {		
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.nt");
+		String triples = readFile(file);
+		ServerSocket server = serve("application/n-triples", triples.substring(0, triples.indexOf('\n') + 1), true);
+		
+		try {
+			Properties initParams = new Properties();
+			initParams.setProperty("modelURL", "http://127.0.0.1:" + server.getLocalPort() + "/animals.nt");
+			initParams.setProperty("content-type", ATTRIBUTE_CONTENT_TYPE);
+			initParams.setProperty("load", "async");
+			
+			RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+			prepare(); 
+			providerUnderTest.init();		
+			
+			// The stalled connection is closed
+			long start = System.currentTimeMillis();
+			providerUnderTest.destroy();
+			assertTrue(System.currentTimeMillis() - start < 5000);
+	
+			verify(); 
+		} finally {
+			server.close();
+		}
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#getContent(java.lang.String)} while the source is
+	 * loaded in the background and stalls before the subject.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testGetContentStringAsyncLoadTimeout() throws Exception {		
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.nt");
+		String triples = readFile(file);
+		ServerSocket server = serve("application/n-triples", triples.substring(0, triples.indexOf('\n') + 1), true);
+		
+		try {
+			Properties initParams = new Properties();
+			initParams.setProperty("modelURL", "http://127.0.0.1:" + server.getLocalPort() + "/animals.nt");
+			initParams.setProperty("content-type", ATTRIBUTE_CONTENT_TYPE);
+			initParams.setProperty("load", "async");
+			initParams.setProperty("loadWaitMillis", "200");
+			
+			RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+			prepare(); 
+			providerUnderTest.init();		
+			
+			// The lookup gives up after the wait instead of blocking until the source completes
+			long start = System.currentTimeMillis();
+			assertNull(providerUnderTest.getContent("urn:animals:lion"));
+			assertTrue(System.currentTimeMillis() - start < 5000);
+			
+			providerUnderTest.destroy();
+	
+			verify(); 
+		} finally {
+			server.close();
+		}
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#doSynchronization()} with a paged SPARQL CONSTRUCT
+	 * query whose template has a constant subject. It is fetched in a single request.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDoSynchronizationSparqlConstantSubject() throws Exception {		
+		StringBuilder lion = new StringBuilder();
+		
+		for (String line : readFile(new File(System.getProperty("user.dir") + "/src/test/animals.nt")).split("\n")) {
+			if (line.startsWith("<urn:animals:lion>")) {
+				lion.append(line).append('\n');
+			}
+		}
+		
+		ServerSocket server = serve("application/n-triples", lion.toString(), false);
+		
+		try {
+			Properties initParams = new Properties();
+			initParams.setProperty("modelURL", "http://127.0.0.1:" + server.getLocalPort() + "/sparql");
+			initParams.setProperty("sparqlQuery", "CONSTRUCT { <urn:animals:lion> ?p ?o } WHERE { <urn:animals:lion> ?p ?o }");
+			initParams.setProperty("sparqlPageSize", "2");
+			initParams.setProperty("content-type", ATTRIBUTE_CONTENT_TYPE);
+			
+			RDFContentProvider providerUnderTest = createProvider(initParams);
+			
+			this.expectsGetExistingContents("provider", new LinkedList<Content>());
+			this.expectsAddContent(animalContent("urn:animals:lion"));
+		
+			prepare(); 
+			providerUnderTest.init();		
+			
+			// A second page would not be served
+			providerUnderTest.doSynchronization();
+			
+			providerUnderTest.destroy();
+	
+			verify(); 
+		} finally {
+			server.close();
+		}
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#init()} with a SPARQL service that does not
+	 * respond in time.
+	 * @throws Exception 
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testInitSparqlReadTimeout() throws Exception {		
+		ServerSocket server = serve("application/n-triples", "", true);
+		
+		try {
+			Properties initParams = new Properties();
+			initParams.setProperty("modelURL", "http://127.0.0.1:" + server.getLocalPort() + "/sparql");
+			initParams.setProperty("sparqlQuery", "CONSTRUCT { ?s ?p ?o } WHERE { ?s ?p ?o }");
+			initParams.setProperty("sparqlReadTimeout", "200");
+			initParams.setProperty("content-type", ATTRIBUTE_CONTENT_TYPE);
+			
+			RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+			// The query fails after the read timeout
+			prepare(); 
+			providerUnderTest.init();		
+		} finally {
+			server.close();
+		}
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#doSynchronization()}, with a SELECT page of a 
+	 * SPARQL service that does not respond.
+	 * @throws Exception 
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testDoSynchronizationSparqlSelectReadTimeout() throws Exception {		
+		ServerSocket server = serve("application/sparql-results+xml", "", true);
+		
+		try {
+			Properties initParams = new Properties();
+			initParams.setProperty("modelURL", "http://127.0.0.1:" + server.getLocalPort() + "/sparql");
+			initParams.setProperty("sparqlQuery", "SELECT ?s ?p ?o WHERE { ?s ?p ?o }");
+			initParams.setProperty("sparqlPageSize", "2");
+			initParams.setProperty("sparqlReadTimeout", "200");
+			initParams.setProperty("content-type", ATTRIBUTE_CONTENT_TYPE);
+			
+			RDFContentProvider providerUnderTest = createProvider(initParams);
+			
+			this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		
+			prepare(); 
+			providerUnderTest.init();		
+			
+			// The first page fails after the read timeout
+			providerUnderTest.doSynchronization();
+		} finally {
+			server.close();
+		}
+	}	
+
+	/**
+	 * Test method for the metrics of {@link RDFContentProvider}, registered over JMX.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testMetrics() throws Exception {		
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
+		RDFContentProvider providerUnderTest = createProvider(initParams(file));
+		
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		this.expectsAddContents(animalContents());
+	
+		prepare(); 
+		providerUnderTest.init();		
+		
+		providerUnderTest.doSynchronization();
+		
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("sf.net.plugin.rdf:type=RDFContentProvider,name=" + ObjectName.quote("provider"));
+		assertTrue(server.isRegistered(name));
+		assertEquals(13L, server.getAttribute(name, "ModelTriples"));
+		assertEquals(4L, server.getAttribute(name, "ModelSubjects"));
+		assertEquals(4L, server.getAttribute(name, "LastSyncSubjects"));
+		assertEquals(3L, server.getAttribute(name, "ContentsAdded"));
+		assertEquals(1L, server.getAttribute(name, "ResourcesSkipped"));
+		assertEquals("OK", server.getAttribute(name, "LastSyncOutcome"));
+		
+		providerUnderTest.destroy();
+		assertFalse(server.isRegistered(name));
+
+		verify(); 
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#doSynchronization()} with a mapping file that
+	 * drops, renames and types predicates and sets key flags. rdf:type is dropped, the sequence
+	 * is skipped anyway.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDoSynchronizationMapping() throws Exception {		
+		File file = File.createTempFile("animals", ".nt");
+		file.deleteOnExit();
+		writeFile(file, MAPPED_ANIMALS);
+		
+		File mappingFile = File.createTempFile("mapping", ".txt");
+		mappingFile.deleteOnExit();
+		writeFile(mappingFile, "# Mapping of the zoo\n"
+				+ RDF_NS + "type    drop\n"
+				+ ZOO_NS + "species    drop\n"
+				+ ZOO_NS + "class    KIND,nokey\n"
+				+ ZOO_NS + "legs    LEGS,number\n"
+				+ ZOO_NS + "habitat    HABITAT,text,key\n");
+		
+		Properties initParams = initParams(file);
+		initParams.setProperty("ingest", "stream");
+		initParams.setProperty("mappingFile", mappingFile.getAbsolutePath());
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		Content lion = new Content();
+		lion.setContentUrl("urn:animals:lion");
+		lion.setProvider("provider");
+		lion.setType(ATTRIBUTE_CONTENT_TYPE);
+		lion.addAttribute(new Attribute("KIND", "Mammal", Attribute.ATTRIBUTE_TYPE_TEXT, false));
+		lion.addAttribute(new Attribute(ATTRIBUTE_NAME, "Lion", Attribute.ATTRIBUTE_TYPE_TEXT, true));
+		lion.addAttribute(new Attribute("WEIGHT", "190", Attribute.ATTRIBUTE_TYPE_NUMBER, true));
+		lion.addAttribute(new Attribute("LEGS", "4", Attribute.ATTRIBUTE_TYPE_NUMBER, true));
+		lion.addAttribute(new Attribute("HABITAT", "urn:habitats:savanna", Attribute.ATTRIBUTE_TYPE_TEXT, true));
+		lion.addAttribute(new Attribute(ATTRIBUTE_RDFNAMESPACE, "urn:animals:", Attribute.ATTRIBUTE_TYPE_TEXT, false));
+		
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		this.expectsAddContent(lion);
+	
+		prepare(); 
+		providerUnderTest.init();		
+		
+		providerUnderTest.doSynchronization();
+		
+		providerUnderTest.destroy();
+
+		verify(); 
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#doSynchronization()} with a mapping file that
+	 * renames rdf:type. The type becomes an attribute, the sequence is still skipped.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDoSynchronizationMappingRenamedType() throws Exception {		
+		File file = File.createTempFile("animals", ".nt");
+		file.deleteOnExit();
+		writeFile(file, MAPPED_ANIMALS);
+		
+		File mappingFile = File.createTempFile("mapping", ".txt");
+		mappingFile.deleteOnExit();
+		writeFile(mappingFile, RDF_NS + "type    CATEGORY\n");
+		
+		Properties initParams = initParams(file);
+		initParams.setProperty("ingest", "stream");
+		initParams.setProperty("mappingFile", mappingFile.getAbsolutePath());
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		Content lion = new Content();
+		lion.setContentUrl("urn:animals:lion");
+		lion.setProvider("provider");
+		lion.setType(ATTRIBUTE_CONTENT_TYPE);
+		lion.addAttribute(new Attribute("CATEGORY", ZOO_NS + "Animal", Attribute.ATTRIBUTE_TYPE_TEXT, false));
+		lion.addAttribute(new Attribute(ATTRIBUTE_CLASS, "Mammal", Attribute.ATTRIBUTE_TYPE_TEXT, true));
+		lion.addAttribute(new Attribute(ATTRIBUTE_SPECIES, "Panthera leo", Attribute.ATTRIBUTE_TYPE_TEXT, true));
+		lion.addAttribute(new Attribute(ATTRIBUTE_NAME, "Lion", Attribute.ATTRIBUTE_TYPE_TEXT, true));
+		lion.addAttribute(new Attribute("WEIGHT", "190", Attribute.ATTRIBUTE_TYPE_NUMBER, true));
+		lion.addAttribute(new Attribute("LEGS", "4", Attribute.ATTRIBUTE_TYPE_TEXT, true));
+		lion.addAttribute(new Attribute("HABITAT", "urn:habitats:savanna", Attribute.ATTRIBUTE_TYPE_TEXT, false));
+		lion.addAttribute(new Attribute(ATTRIBUTE_RDFNAMESPACE, "urn:animals:", Attribute.ATTRIBUTE_TYPE_TEXT, false));
+		
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		this.expectsAddContent(lion);
+	
+		prepare(); 
+		providerUnderTest.init();		
+		
+		providerUnderTest.doSynchronization();
+		
+		providerUnderTest.destroy();
+
+		verify(); 
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#doSynchronization()} in slices of two subjects.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDoSynchronizationSlices() throws Exception {		
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
+		Properties initParams = initParams(file);
+		initParams.setProperty("maxSyncResources", "2");
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		// The existing contents are fetched once for both slices
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		this.expectsAddContents(animalContents());
+	
+		prepare(); 
+		providerUnderTest.init();		
+		
+		// The first slice stops after two of the four subjects
+		providerUnderTest.doSynchronization();
+		providerUnderTest.doSynchronization();
+		
+		providerUnderTest.destroy();
+
+		verify(); 
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#doSynchronization()} in slices of one subject on several threads.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDoSynchronizationSlicesParallel() throws Exception {		
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
+		Properties initParams = initParams(file);
+		initParams.setProperty("maxSyncResources", "1");
+		initParams.setProperty("syncThreads", "2");
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		// The existing contents are fetched once for both slices
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		this.expectsAddContents(animalContents());
+	
+		prepare(); 
+		providerUnderTest.init();		
+		
+		// Subjects prepared behind a slice are synchronized by the next one
+		for (int i = 0; i < 4; i++) {
+			providerUnderTest.doSynchronization();
+		}
+		
+		providerUnderTest.destroy();
+
+		verify(); 
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#doSynchronization()} with a refreshed source.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDoSynchronizationRefresh() throws Exception {		
+		String animals = readFile(new File(System.getProperty("user.dir") + "/src/test/animals.rdf"));
+		File file = File.createTempFile("animals", ".rdf");
+		file.deleteOnExit();
+		writeFile(file, animals);
+		
+		Properties initParams = initParams(file);
+		initParams.setProperty("refreshSource", "true");
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		List<Content> contents = animalContents();
+
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		this.expectsAddContents(contents);
+		
+		this.expectsGetExistingContents("provider", contents);
+		this.expectsAddContent(namedContent("urn:animals:zebra", "Zebra"));
+	
+		prepare(); 
+		providerUnderTest.init();		
+		
+		// The unchanged source must not call the core again
+		providerUnderTest.doSynchronization();
+		providerUnderTest.doSynchronization();
+		
+		// Only the added subject is pushed after the source changed
+		String zebra = "<RDF:Description about=\"urn:animals:zebra\"><ANIMALS:name>Zebra</ANIMALS:name></RDF:Description>\n";
+		writeFile(file, animals.replace("</RDF:RDF>", zebra + "</RDF:RDF>"));
+		providerUnderTest.doSynchronization();
+		
+		providerUnderTest.destroy();
+
+		verify(); 
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#doSynchronization()} with a N-Triples source loaded on several threads.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDoSynchronizationLoadThreads() throws Exception {		
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.nt");
+		Properties initParams = initParams(file);
+		initParams.setProperty("loadThreads", "4");
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		this.expectsAddContents(animalContents());
+	
+		prepare(); 
+		providerUnderTest.init();		
+		
+		providerUnderTest.doSynchronization();
+		
+		providerUnderTest.destroy();
+
+		verify(); 
+	}	
+
+	/**
+	 * Test method for {@link ParallelNTriplesLoader#load(String, Dataset)} with N-Quads. The quads
+	 * are kept in their named graphs.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testParallelLoadQuads() throws Exception {
+		File file = File.createTempFile("animals", ".nq");
+		file.deleteOnExit();
+		writeFile(file, "<urn:animals:lion> <" + ZOO_NS + "name> \"Lion\" <urn:graphs:mammals> .\n"
+				+ "<urn:animals:tarantula> <" + ZOO_NS + "name> \"Tarantula\" .\n");
+		
+		Dataset dataset = DatasetFactory.createMem();
+		long triples = new ParallelNTriplesLoader(2).load(file.toURI().toURL().toString(), dataset);
+		
+		assertEquals(2, triples);
+		assertTrue(dataset.containsNamedModel("urn:graphs:mammals"));
+		assertEquals(1, dataset.getNamedModel("urn:graphs:mammals").size());
+		assertEquals(1, dataset.getDefaultModel().size());
+	}
+
+	/**
+	 * Test method for {@link UnionLoader#load()} with sources loaded in parallel. Equal blank node
+	 * labels of different sources are different nodes.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testParallelLoadUnionBlankNodes() throws Exception {
+		File lion = File.createTempFile("lion", ".nt");
+		lion.deleteOnExit();
+		writeFile(lion, "<urn:animals:lion> <" + ZOO_NS + "habitat> _:b0 .\n"
+				+ "_:b0 <" + ZOO_NS + "name> \"Savanna\" .\n");
+		
+		File tarantula = File.createTempFile("tarantula", ".nt");
+		tarantula.deleteOnExit();
+		writeFile(tarantula, "<urn:animals:tarantula> <" + ZOO_NS + "habitat> _:b0 .\n"
+				+ "_:b0 <" + ZOO_NS + "name> \"Rainforest\" .\n");
+		
+		Model model = new UnionLoader(Arrays.asList(lion.toURI().toURL().toString(), tarantula.toURI().toURL().toString()), 2, 2).load();
+		
+		int habitats = 0;
+		
+		for (Resource subject : model.listSubjects().toList()) {
+			if (subject.isAnon()) {
+				habitats++;
+			}
+		}
+		
+		assertEquals(2, habitats);
+	}
+
+	/**
+	 * Test method for {@link RDFContentProvider#doSynchronization()} with a refreshed TriG source.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDoSynchronizationRefreshNamedGraphs() throws Exception {		
+		String mammals = "<urn:graphs:mammals> { <urn:animals:lion> zoo:name \"Lion\" . }\n";
+		String arachnids = "<urn:graphs:arachnids> { <urn:animals:tarantula> zoo:name \"Tarantula\" . }\n";
+		String prefix = "@prefix zoo: <http://www.some-ficticious-zoo.com/rdf#> .\n";
+		File file = File.createTempFile("animals", ".trig");
+		file.deleteOnExit();
+		writeFile(file, prefix + mammals + arachnids);
+		
+		Properties initParams = initParams(file);
+		initParams.setProperty("refreshSource", "true");
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		Content content1 = namedContent("urn:animals:lion", "Lion");
+		Content content2 = namedContent("urn:animals:tarantula", "Tarantula");
+		Content content3 = namedContent("urn:animals:hippopotamus", "Hippopotamus");
+
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		
+		this.expectsAddContent(content1);
+		this.expectsAddContent(content2);
+		
+		this.expectsGetExistingContents("provider", Arrays.asList(content1, content2));
+		this.expectsAddContent(content3);
+	
+		prepare(); 
+		providerUnderTest.init();		
+		
+		providerUnderTest.doSynchronization();
+		
+		// Only the changed graph is compared, its unchanged lion is not pushed again
+		mammals = mammals.replace(" }", " <urn:animals:hippopotamus> zoo:name \"Hippopotamus\" . }");
+		writeFile(file, prefix + mammals + arachnids);
+		providerUnderTest.doSynchronization();
+		
+		providerUnderTest.destroy();
+
+		verify(); 
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#doSynchronization()} with streaming ingestion of a
+	 * source that splits the lion into two runs. The lion is added once with all of its triples
+	 * and stays unchanged in the next pass.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDoSynchronizationStreamingSplitSubject() throws Exception {		
+		String[] lines = readFile(new File(System.getProperty("user.dir") + "/src/test/animals.nt")).split("\n");
+		StringBuilder triples = new StringBuilder();
+		
+		for (int i : new int[] { 0, 1, 2, 3, 4, 7, 8, 9, 10, 11, 12, 5, 6 }) {
+			triples.append(lines[i]).append('\n');
+		}
+		
+		File file = File.createTempFile("animals", ".nt");
+		file.deleteOnExit();
+		writeFile(file, triples.toString());
+		
+		File fingerprintFile = File.createTempFile("fingerprints", ".bin");
+		fingerprintFile.delete();
+		fingerprintFile.deleteOnExit();
+		
+		Properties initParams = initParams(file);
+		initParams.setProperty("ingest", "stream");
+		initParams.setProperty("fingerprintFile", fingerprintFile.getAbsolutePath());
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		this.expectsAddContent(animalContent("urn:animals:tarantula"));
+		this.expectsAddContent(animalContent("urn:animals:hippopotamus"));
+		this.expectsAddContent(animalContent("urn:animals:lion"));
+		
+		prepare(); 
+		providerUnderTest.init();		
+		providerUnderTest.doSynchronization();
+		providerUnderTest.doSynchronization();
+		
+		providerUnderTest.destroy();
+		verify(); 
+	}	
+
+	/**
+	 * Test method for {@link RDFContentProvider#doSynchronization()} with streaming ingestion.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDoSynchronizationStreaming() throws Exception {		
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.nt");
+		Properties initParams = initParams(file);
+		initParams.setProperty("ingest", "stream");
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		this.expectsAddContents(animalContents());
+	
+		prepare(); 
+		providerUnderTest.init();		
+		
+		providerUnderTest.doSynchronization();
+		
+		providerUnderTest.destroy();
+
+		verify(); 
+	}	
+
 	/**
-	 * Test method for {@link RDFContentProvider#doSynchronization()}.
+	 * Test method for {@link RDFContentProvider#doSynchronization()} with streaming ingestion of a gzip compressed source.
 	 * @throws Exception 
 	 */
 	@Test
-	public void testDoSynchronization() throws Exception {		
-		// The ContentProvider to test
-		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
-		Properties initParams = new Properties();
-		initParams.setProperty("modelURL", file.toURI().toURL().toString());
-		initParams.setProperty("content-type", ATTRIBUTE_CONTENT_TYPE);
+	public void testDoSynchronizationStreamingGzip() throws Exception {		
+		String animals = readFile(new File(System.getProperty("user.dir") + "/src/test/animals.nt"));
+		File file = File.createTempFile("animals", ".nt.gz");
+		file.deleteOnExit();
+		OutputStream out = new GZIPOutputStream(new FileOutputStream(file));
 		
-		RDFContentProvider providerUnderTest = new RDFContentProvider();
-		providerUnderTest.setId(1);
-		providerUnderTest.setName("provider");
-		providerUnderTest.setInitParams(initParams);
+		try {
+			out.write(animals.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
 		
-		// Prepare your testdata
-		Content content1 = new Content();
-		content1.setContentUrl("urn:animals:lion");
-		content1.setProvider("provider");
-		content1.setType(ATTRIBUTE_CONTENT_TYPE);
-		content1.addAttribute(new Attribute(ATTRIBUTE_CLASS, "Mammal", Attribute.ATTRIBUTE_TYPE_TEXT, true));
-		content1.addAttribute(new Attribute(ATTRIBUTE_SPECIES, "Panthera leo", Attribute.ATTRIBUTE_TYPE_TEXT, true));
-		content1.addAttribute(new Attribute(ATTRIBUTE_NAME, "Lion", Attribute.ATTRIBUTE_TYPE_TEXT, true));
-		content1.addAttribute(new Attribute(ATTRIBUTE_RDFNAMESPACE, "urn:animals:", Attribute.ATTRIBUTE_TYPE_TEXT, false));
-		
-		Content content2 = new Content();
-		content2.setContentUrl("urn:animals:tarantula");
-		content2.setProvider("provider");
-		content2.setType(ATTRIBUTE_CONTENT_TYPE);
-		content2.addAttribute(new Attribute(ATTRIBUTE_CLASS, "Arachnid", Attribute.ATTRIBUTE_TYPE_TEXT, true));
-		content2.addAttribute(new Attribute(ATTRIBUTE_SPECIES, "Avicularia avicularia", Attribute.ATTRIBUTE_TYPE_TEXT, true));
-		content2.addAttribute(new Attribute(ATTRIBUTE_NAME, "Tarantula", Attribute.ATTRIBUTE_TYPE_TEXT, true));
-		content2.addAttribute(new Attribute(ATTRIBUTE_RDFNAMESPACE, "urn:animals:", Attribute.ATTRIBUTE_TYPE_TEXT, false));
-		
-		Content content3 = new Content();
-		content3.setContentUrl("urn:animals:hippopotamus");
-		content3.setProvider("provider");
-		content3.setType(ATTRIBUTE_CONTENT_TYPE);
-		content3.addAttribute(new Attribute(ATTRIBUTE_CLASS, "Mammal", Attribute.ATTRIBUTE_TYPE_TEXT, true));
-		content3.addAttribute(new Attribute(ATTRIBUTE_SPECIES, "Hippopotamus amphibius", Attribute.ATTRIBUTE_TYPE_TEXT, true));
-		content3.addAttribute(new Attribute(ATTRIBUTE_NAME, "Hippopotamus", Attribute.ATTRIBUTE_TYPE_TEXT, true));
-		content3.addAttribute(new Attribute(ATTRIBUTE_RDFNAMESPACE, "urn:animals:", Attribute.ATTRIBUTE_TYPE_TEXT, false));
-
-		// Add your expectations
-		this.expectsIsExistingContent("provider", "urn:animals:lion", false);
-		this.expectsIsExistingContent("provider", "urn:animals:tarantula", false);
-		this.expectsIsExistingContent("provider", "urn:animals:hippopotamus", false);
-		this.expectsIsExistingContent("provider", "urn:animals:data", false);
+		Properties initParams = initParams(file);
+		initParams.setProperty("ingest", "stream");
 		
-		this.expectsAddContent(content1);
-		this.expectsAddContent(content2);
-		this.expectsAddContent(content3);
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		this.expectsAddContents(animalContents());
 	
-		// Initialize the test
 		prepare(); 
 		providerUnderTest.init();		
 		
-		// Execute the method(s) under test
 		providerUnderTest.doSynchronization();
 		
-		// Destroy the plugin
 		providerUnderTest.destroy();
 
-		// Verify if your expectations were met
 		verify(); 
 	}	
 
@@ -114,14 +1037,9 @@ public class RDFContentProviderTest extends ContentProviderTestCase {
 	public void testDoHousekeeping() throws Exception {		
 		// The ContentProvider to test
 		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
-		Properties initParams = new Properties();
-		initParams.setProperty("modelURL", file.toURI().toURL().toString());
-		initParams.setProperty("content-type", ATTRIBUTE_CONTENT_TYPE);
+		Properties initParams = initParams(file);
 		
-		RDFContentProvider providerUnderTest = new RDFContentProvider();
-		providerUnderTest.setId(1);
-		providerUnderTest.setName("provider");
-		providerUnderTest.setInitParams(initParams);
+		RDFContentProvider providerUnderTest = createProvider(initParams);
 		
 		// Prepare your testdata
 		Content content = new Content();
@@ -149,6 +1067,52 @@ public class RDFContentProviderTest extends ContentProviderTestCase {
 		verify(); 
 	}
 
+	/**
+	 * Test method for {@link RDFContentProvider#doHousekeeping()} with a Bloom filter. A removed
+	 * content that is a false positive of the filter is removed as well.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDoHousekeepingBloom() throws Exception {		
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
+		Properties initParams = initParams(file);
+		initParams.setProperty("housekeepingFilter", "bloom");
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		// A filter sized by the four subjects of the source
+		BloomFilter bloom = new BloomFilter(4, 0.01);
+		
+		for (String url : new String[] { "urn:animals:data", "urn:animals:lion", "urn:animals:tarantula", "urn:animals:hippopotamus" }) {
+			bloom.add(Fingerprints.hash(url));
+		}
+		
+		String falsePositive = null;
+		
+		for (int i = 0; falsePositive == null; i++) {
+			if (bloom.mightContain(Fingerprints.hash("urn:animals:ghost" + i))) {
+				falsePositive = "urn:animals:ghost" + i;
+			}
+		}
+		
+		Collection<Content> existingContents = new LinkedList<Content>(animalContents());
+		existingContents.add(namedContent("urn:animals:zebra", "Zebra"));
+		existingContents.add(namedContent(falsePositive, "Ghost"));
+		
+		this.expectsGetExistingContents("provider", existingContents);
+		this.expectsRemoveContent("provider", "urn:animals:zebra");
+		this.expectsRemoveContent("provider", falsePositive);
+		
+		prepare(); 
+		providerUnderTest.init();		
+		
+		providerUnderTest.doHousekeeping();
+		
+		providerUnderTest.destroy();
+	
+		verify(); 
+	}
+
 	/**
 	 * Test method for {@link RDFContentProvider#getBinaryData(com.iqser.core.model.Content)}.
 	 * @throws Exception 
@@ -157,14 +1121,9 @@ public class RDFContentProviderTest extends ContentProviderTestCase {
 	public void testGetBinaryData() throws Exception {		
 		// The ContentProvider to test
 		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
-		Properties initParams = new Properties();
-		initParams.setProperty("modelURL", file.toURI().toURL().toString());
-		initParams.setProperty("content-type", ATTRIBUTE_CONTENT_TYPE);
+		Properties initParams = initParams(file);
 		
-		RDFContentProvider providerUnderTest = new RDFContentProvider();
-		providerUnderTest.setId(1);
-		providerUnderTest.setName("provider");
-		providerUnderTest.setInitParams(initParams);
+		RDFContentProvider providerUnderTest = createProvider(initParams);
 		
 		// Prepare your testdata
 		Content content = new Content();
@@ -199,6 +1158,86 @@ public class RDFContentProviderTest extends ContentProviderTestCase {
 		verify(); 
 	}
 
+	/**
+	 * Test method for {@link RDFContentProvider#getBinaryData(com.iqser.core.model.Content)}.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testGetBinaryDataCached() throws Exception {		
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
+		Properties initParams = initParams(file);
+		initParams.setProperty("binaryCacheBytes", "65536");
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		Content content = new Content();
+		content.setContentUrl("urn:animals:lion");
+		content.setProvider("provider");
+		
+		String text = "<rdf:RDF\n" +
+				"    xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"\n" +
+				"    xmlns:j.0=\"http://www.some-ficticious-zoo.com/rdf#\" > \n" + 
+				"  <rdf:Description rdf:about=\"urn:animals:lion\">\n" + 
+				"    <j.0:name>Lion</j.0:name>\n" + 
+				"    <j.0:species>Panthera leo</j.0:species>\n" +
+				"    <j.0:class>Mammal</j.0:class>\n" + 
+				"  </rdf:Description>\n" + 
+				"</rdf:RDF>\n";
+		
+		prepare(); 
+		providerUnderTest.init();		
+		
+		byte[] bytes = providerUnderTest.getBinaryData(content);
+		assertEquals(text, new String(bytes));
+		
+		// The cached data is returned as a copy
+		bytes[0] = 0;
+		assertEquals(text, new String(providerUnderTest.getBinaryData(content)));
+		
+		providerUnderTest.destroy();
+	
+		verify(); 
+	}
+
+	/**
+	 * Test method for {@link RDFContentProvider#getBinaryData(com.iqser.core.model.Content)}.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testGetBinaryDataNTriplesGzip() throws Exception {		
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
+		Properties initParams = initParams(file);
+		initParams.setProperty("binaryFormat", "N-TRIPLES");
+		initParams.setProperty("binaryCompression", "gzip");
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		Content content = new Content();
+		content.setContentUrl("urn:animals:lion");
+		content.setProvider("provider");
+		
+		String line = "<urn:animals:lion> <http://www.some-ficticious-zoo.com/rdf#name> \"Lion\" .";
+		
+		prepare(); 
+		providerUnderTest.init();		
+		
+		byte[] bytes = providerUnderTest.getBinaryData(content);
+	
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(bytes)), "UTF-8"));
+		List<String> lines = new ArrayList<String>();
+		
+		for (String l = reader.readLine(); l != null; l = reader.readLine()) {
+			lines.add(l.trim());
+		}
+		
+		assertEquals(3, lines.size());
+		assertTrue(lines.contains(line));
+		
+		providerUnderTest.destroy();
+	
+		verify(); 
+	}
+
 	/**
 	 * Test method for {@link RDFContentProvider#getContent(java.lang.String)}.
 	 * @throws Exception 
@@ -207,24 +1246,12 @@ public class RDFContentProviderTest extends ContentProviderTestCase {
 	public void testGetContentString() throws Exception {		
 		// The ContentProvider to test
 		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
-		Properties initParams = new Properties();
-		initParams.setProperty("modelURL", file.toURI().toURL().toString());
-		initParams.setProperty("content-type", ATTRIBUTE_CONTENT_TYPE);
+		Properties initParams = initParams(file);
 		
-		RDFContentProvider providerUnderTest = new RDFContentProvider();
-		providerUnderTest.setId(1);
-		providerUnderTest.setName("provider");
-		providerUnderTest.setInitParams(initParams);
+		RDFContentProvider providerUnderTest = createProvider(initParams);
 		
 		// Prepare your testdata
-		Content content = new Content();
-		content.setContentUrl("urn:animals:lion");
-		content.setProvider("provider");
-		content.setType(ATTRIBUTE_CONTENT_TYPE);
-		content.addAttribute(new Attribute(ATTRIBUTE_CLASS, "Mammal", Attribute.ATTRIBUTE_TYPE_TEXT, true));
-		content.addAttribute(new Attribute(ATTRIBUTE_SPECIES, "Panthera leo", Attribute.ATTRIBUTE_TYPE_TEXT, true));
-		content.addAttribute(new Attribute(ATTRIBUTE_NAME, "Lion", Attribute.ATTRIBUTE_TYPE_TEXT, true));
-		content.addAttribute(new Attribute(ATTRIBUTE_RDFNAMESPACE, "urn:animals:", Attribute.ATTRIBUTE_TYPE_TEXT, false));
+		Content content = animalContent("urn:animals:lion");
 		
 		// Initialize the test
 		prepare(); 
@@ -241,6 +1268,90 @@ public class RDFContentProviderTest extends ContentProviderTestCase {
 		verify(); 
 	}
 
+	/**
+	 * Test method for {@link RDFContentProvider#getContent(java.lang.String)} with streaming
+	 * ingestion. After a synchronization the subject is read from the cache of the pass, not from
+	 * the source.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testGetContentStringStreaming() throws Exception {		
+		File file = File.createTempFile("animals", ".nt");
+		file.deleteOnExit();
+		writeFile(file, readFile(new File(System.getProperty("user.dir") + "/src/test/animals.nt")));
+		
+		Properties initParams = initParams(file);
+		initParams.setProperty("ingest", "stream");
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		this.expectsGetExistingContents("provider", new LinkedList<Content>());
+		this.expectsAddContents(animalContents());
+		
+		prepare(); 
+		providerUnderTest.init();		
+		providerUnderTest.doSynchronization();
+		
+		writeFile(file, "");
+		assertEquals(animalContent("urn:animals:lion"), providerUnderTest.getContent("urn:animals:lion"));
+		
+		providerUnderTest.destroy();
+		verify(); 
+	}
+
+	/**
+	 * Test method for {@link RDFContentProvider#getContent(java.lang.String)} with TDB storage.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testGetContentStringTdb() throws Exception {		
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
+		File storageDir = File.createTempFile("tdb", "");
+		storageDir.delete();
+		
+		Properties initParams = initParams(file);
+		initParams.setProperty("storage", "tdb");
+		initParams.setProperty("storageDir", storageDir.getAbsolutePath());
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		Content content = animalContent("urn:animals:lion");
+		
+		prepare(); 
+		providerUnderTest.init();		
+		
+		Content contentFromProvider = providerUnderTest.getContent(content.getContentUrl());
+		assertEquals(content, contentFromProvider);
+		
+		providerUnderTest.destroy();
+	
+		verify(); 
+	}
+
+	/**
+	 * Test method for {@link RDFContentProvider#getContent(java.lang.String)} with compact storage.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testGetContentStringCompact() throws Exception {		
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
+		Properties initParams = initParams(file);
+		initParams.setProperty("storage", "compact");
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		Content content = animalContent("urn:animals:lion");
+		
+		prepare(); 
+		providerUnderTest.init();		
+		
+		Content contentFromProvider = providerUnderTest.getContent(content.getContentUrl());
+		assertEquals(content, contentFromProvider);
+		
+		providerUnderTest.destroy();
+	
+		verify(); 
+	}
+
 	/**
 	 * Test method for {@link RDFContentProvider#getContent(java.io.InputStream)}.
 	 * @throws Exception 
@@ -249,24 +1360,12 @@ public class RDFContentProviderTest extends ContentProviderTestCase {
 	public void testGetContentInputStream() throws Exception {		
 		// The ContentProvider to test
 		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
-		Properties initParams = new Properties();
-		initParams.setProperty("modelURL", file.toURI().toURL().toString());
-		initParams.setProperty("content-type", ATTRIBUTE_CONTENT_TYPE);
+		Properties initParams = initParams(file);
 		
-		RDFContentProvider providerUnderTest = new RDFContentProvider();
-		providerUnderTest.setId(1);
-		providerUnderTest.setName("provider");
-		providerUnderTest.setInitParams(initParams);
+		RDFContentProvider providerUnderTest = createProvider(initParams);
 		
 		// Prepare your testdata		
-		Content content = new Content();
-		content.setContentUrl("urn:animals:lion");
-		content.setProvider("provider");
-		content.setType(ATTRIBUTE_CONTENT_TYPE);
-		content.addAttribute(new Attribute(ATTRIBUTE_CLASS, "Mammal", Attribute.ATTRIBUTE_TYPE_TEXT, true));
-		content.addAttribute(new Attribute(ATTRIBUTE_SPECIES, "Panthera leo", Attribute.ATTRIBUTE_TYPE_TEXT, true));
-		content.addAttribute(new Attribute(ATTRIBUTE_NAME, "Lion", Attribute.ATTRIBUTE_TYPE_TEXT, true));
-		content.addAttribute(new Attribute(ATTRIBUTE_RDFNAMESPACE, "urn:animals:", Attribute.ATTRIBUTE_TYPE_TEXT, false));
+		Content content = animalContent("urn:animals:lion");
 
 		String rawContent = "<rdf:RDF\n" +
 				"    xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"\n" +
@@ -295,6 +1394,39 @@ public class RDFContentProviderTest extends ContentProviderTestCase {
 		verify(); 
 	}
 
+	/**
+	 * Test method for {@link RDFContentProvider#getContent(java.io.InputStream)}.
+	 * @throws Exception 
+	 */
+	@Test
+	public void testGetContentInputStreamTurtle() throws Exception {		
+		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
+		Properties initParams = initParams(file);
+		
+		RDFContentProvider providerUnderTest = createProvider(initParams);
+		
+		Content content = animalContent("urn:animals:lion");
+
+		String rawContent = "# Lion\n" +
+				"@prefix zoo: <http://www.some-ficticious-zoo.com/rdf#> .\n" +
+				"<urn:animals:lion> zoo:name \"Lion\" ;\n" + 
+				"    zoo:species \"Panthera leo\" ;\n" +
+				"    zoo:class \"Mammal\" .\n" + 
+				"<urn:animals:tarantula> zoo:name \"Tarantula\" .\n";
+		
+		InputStream inputStream = new ByteArrayInputStream(rawContent.getBytes());
+				
+		prepare(); 
+		providerUnderTest.init();		
+		
+		Content contentFromProvider = providerUnderTest.getExistingContent(inputStream);
+		assertEquals(content, contentFromProvider);
+		
+		providerUnderTest.destroy();
+	
+		verify(); 
+	}
+
 	/**
 	 * Test method for {@link RDFContentProvider#getActions(com.iqser.core.model.Content)}.
 	 * @throws Exception 
@@ -303,14 +1435,9 @@ public class RDFContentProviderTest extends ContentProviderTestCase {
 	public void testGetActions() throws Exception {
 		// The ContentProvider to test
 		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
-		Properties initParams = new Properties();
-		initParams.setProperty("modelURL", file.toURI().toURL().toString());
-		initParams.setProperty("content-type", ATTRIBUTE_CONTENT_TYPE);
+		Properties initParams = initParams(file);
 		
-		RDFContentProvider providerUnderTest = new RDFContentProvider();
-		providerUnderTest.setId(1);
-		providerUnderTest.setName("provider");
-		providerUnderTest.setInitParams(initParams);
+		RDFContentProvider providerUnderTest = createProvider(initParams);
 		
 		// Prepare your testdata
 		Content content = new Content();
@@ -341,14 +1468,9 @@ public class RDFContentProviderTest extends ContentProviderTestCase {
 		
 		// The ContentProvider to test
 		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
-		Properties initParams = new Properties();
-		initParams.setProperty("modelURL", file.toURI().toURL().toString());
-		initParams.setProperty("content-type", ATTRIBUTE_CONTENT_TYPE);
+		Properties initParams = initParams(file);
 		
-		RDFContentProvider providerUnderTest = new RDFContentProvider();
-		providerUnderTest.setId(1);
-		providerUnderTest.setName("provider");
-		providerUnderTest.setInitParams(initParams);
+		RDFContentProvider providerUnderTest = createProvider(initParams);
 		
 		// Prepare your testdata
 		Content content = new Content();
@@ -377,14 +1499,9 @@ public class RDFContentProviderTest extends ContentProviderTestCase {
 	public void testPerformActionStringCollectionOfParameterContent() throws Exception {		
 		// The ContentProvider to test
 		File file = new File(System.getProperty("user.dir") + "/src/test/animals.rdf");
-		Properties initParams = new Properties();
-		initParams.setProperty("modelURL", file.toURI().toURL().toString());
-		initParams.setProperty("content-type", ATTRIBUTE_CONTENT_TYPE);
+		Properties initParams = initParams(file);
 		
-		RDFContentProvider providerUnderTest = new RDFContentProvider();
-		providerUnderTest.setId(1);
-		providerUnderTest.setName("provider");
-		providerUnderTest.setInitParams(initParams);
+		RDFContentProvider providerUnderTest = createProvider(initParams);
 		
 		// Prepare your testdata
 		Content content = new Content();
@@ -404,4 +1521,145 @@ public class RDFContentProviderTest extends ContentProviderTestCase {
 		// Verify if your expectations were met
 		verify(); 
 	}
+
+	/**
+	 * Creates the provider under test.
+	 */
+	private static RDFContentProvider createProvider(Properties initParams) {
+		RDFContentProvider provider = new RDFContentProvider();
+		provider.setId(1);
+		provider.setName("provider");
+		provider.setInitParams(initParams);
+		
+		return provider;
+	}
+
+	/**
+	 * @return the init parameters to read the animals from the given source
+	 */
+	private static Properties initParams(File source) throws IOException {
+		Properties initParams = new Properties();
+		initParams.setProperty("modelURL", source.toURI().toURL().toString());
+		initParams.setProperty("content-type", ATTRIBUTE_CONTENT_TYPE);
+		
+		return initParams;
+	}
+
+	/**
+	 * Serves a single HTTP response on a local port. A stalled response is not completed, its
+	 * connection is kept open until the server is closed.
+	 */
+	private static ServerSocket serve(String contentType, String body, final boolean stall) throws IOException {
+		final ServerSocket server = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+		final byte[] response = ("HTTP/1.1 200 OK\r\nContent-Type: " + contentType + "\r\nConnection: close\r\n\r\n" + body).getBytes("UTF-8");
+		
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					Socket socket = server.accept();
+					
+					try {
+						socket.getOutputStream().write(response);
+						socket.getOutputStream().flush();
+						
+						if (stall) {
+							// Returns when the server is closed
+							server.accept();
+						}
+					} finally {
+						socket.close();
+					}
+				} catch (IOException e) {
+					// Closed by the test
+				}
+			}
+		});
+		
+		thread.setDaemon(true);
+		thread.start();
+		
+		return server;
+	}
+
+	/**
+	 * @return the contents of the lion, the tarantula and the hippopotamus of animals.rdf
+	 */
+	private static List<Content> animalContents() {
+		return Arrays.asList(
+				animalContent("urn:animals:lion", "Mammal", "Panthera leo", "Lion"),
+				animalContent("urn:animals:tarantula", "Arachnid", "Avicularia avicularia", "Tarantula"),
+				animalContent("urn:animals:hippopotamus", "Mammal", "Hippopotamus amphibius", "Hippopotamus"));
+	}
+
+	/**
+	 * @return the content of a single animal of animals.rdf
+	 */
+	private static Content animalContent(String url) {
+		for (Content content : animalContents()) {
+			if (content.getContentUrl().equals(url)) {
+				return content;
+			}
+		}
+		
+		throw new IllegalArgumentException(url);
+	}
+
+	private static Content animalContent(String url, String animalClass, String species, String name) {
+		Content content = new Content();
+		content.setContentUrl(url);
+		content.setProvider("provider");
+		content.setType(ATTRIBUTE_CONTENT_TYPE);
+		content.addAttribute(new Attribute(ATTRIBUTE_CLASS, animalClass, Attribute.ATTRIBUTE_TYPE_TEXT, true));
+		content.addAttribute(new Attribute(ATTRIBUTE_SPECIES, species, Attribute.ATTRIBUTE_TYPE_TEXT, true));
+		content.addAttribute(new Attribute(ATTRIBUTE_NAME, name, Attribute.ATTRIBUTE_TYPE_TEXT, true));
+		content.addAttribute(new Attribute(ATTRIBUTE_RDFNAMESPACE, "urn:animals:", Attribute.ATTRIBUTE_TYPE_TEXT, false));
+		
+		return content;
+	}
+
+	/**
+	 * @return the content of a subject with a name only
+	 */
+	private static Content namedContent(String url, String name) {
+		Content content = new Content();
+		content.setContentUrl(url);
+		content.setProvider("provider");
+		content.setType(ATTRIBUTE_CONTENT_TYPE);
+		content.addAttribute(new Attribute(ATTRIBUTE_NAME, name, Attribute.ATTRIBUTE_TYPE_TEXT, true));
+		content.addAttribute(new Attribute(ATTRIBUTE_RDFNAMESPACE, "urn:animals:", Attribute.ATTRIBUTE_TYPE_TEXT, false));
+		
+		return content;
+	}
+
+	private void expectsAddContents(Collection<Content> contents) {
+		for (Content content : contents) {
+			this.expectsAddContent(content);
+		}
+	}
+
+	private static String readFile(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+
+		try {
+			for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+				out.write(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+
+		return new String(out.toByteArray(), "UTF-8");
+	}
+
+	private static void writeFile(File file, String text) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+
+		try {
+			out.write(text.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
 }
\ No newline at end of file
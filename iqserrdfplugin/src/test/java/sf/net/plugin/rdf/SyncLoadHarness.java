@@ -0,0 +1,190 @@
+package sf.net.plugin.rdf;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.ResIterator;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.iqser.core.model.Content;
+import com.iqser.gin.developer.test.plugin.provider.ContentProviderTestCase;
+
+/**
+ * Offline load test of the provider on a generated dataset. Runs init, a first synchronization
+ * against an empty core and housekeeping end to end against the stubs of
+ * {@link ContentProviderTestCase}. Then it reports wall time, peak heap and contents per second.
+ * <p>
+ * Usage: <code>SyncLoadHarness [subjects] [nt|ttl|rdf] [seed] [name=value ...]</code>, where the
+ * name value pairs are passed as init params, e.g. <code>ingest=stream</code> or
+ * <code>syncThreads=4</code>.
+ */
+public class SyncLoadHarness extends ContentProviderTestCase {
+
+	private static final String PROVIDER = "harness";
+	private static final String CONTENT_TYPE = "RDF Resource";
+
+	// Share of contents known to the core but missing in the dataset, removed by housekeeping
+	private static final int STALE_PER_MILLE = 10;
+
+	public static void main(String[] args) throws Exception {
+		int subjects = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		String format = args.length > 1 ? args[1] : "nt";
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+
+		Properties initParams = new Properties();
+
+		for (int i = 3; i < args.length; i++) {
+			int eq = args[i].indexOf('=');
+			initParams.setProperty(args[i].substring(0, eq), args[i].substring(eq + 1));
+		}
+
+		new SyncLoadHarness().run(subjects, format, seed, initParams);
+	}
+
+	/**
+	 * Generates the dataset and runs the provider on it.
+	 */
+	public void run(int subjects, String format, long seed, Properties initParams) throws Exception {
+		Lang lang = "rdf".equals(format) ? Lang.RDFXML : "ttl".equals(format) ? Lang.TURTLE : Lang.NTRIPLES;
+		File file = File.createTempFile("lod-" + subjects + "-", "." + format);
+		file.deleteOnExit();
+
+		long start = System.currentTimeMillis();
+		long triples = new LodDatasetGenerator(seed, subjects).write(file, lang);
+
+		report("Generated", triples + " triples, " + file.length() / 1024 + " KB in " + (System.currentTimeMillis() - start) + " ms");
+
+		initParams.setProperty("modelURL", file.toURI().toString());
+		initParams.setProperty("content-type", CONTENT_TYPE);
+
+		RDFContentProvider providerUnderTest = new RDFContentProvider();
+		providerUnderTest.setId(1);
+		providerUnderTest.setName(PROVIDER);
+		providerUnderTest.setInitParams(initParams);
+
+		// The expected contents are built the same way a serial synchronization does
+		List<Content> expected = expectedContents(file, lang, initParams);
+		List<Content> existing = new LinkedList<Content>();
+
+		for (Content c : expected) {
+			if (c.getContentUrl() != null) {
+				existing.add(c);
+			}
+		}
+
+		List<String> stale = new ArrayList<String>();
+
+		for (int i = 0; i < Math.max(1, existing.size() * STALE_PER_MILLE / 1000); i++) {
+			Content c = new Content();
+			c.setContentUrl(LodDatasetGenerator.NS + "stale/" + i);
+			c.setProvider(PROVIDER);
+			existing.add(c);
+			stale.add(c.getContentUrl());
+		}
+
+		this.expectsGetExistingContents(PROVIDER, new LinkedList<Content>());
+
+		for (Content c : expected) {
+			this.expectsAddContent(c);
+		}
+
+		this.expectsGetExistingContents(PROVIDER, existing);
+
+		for (String url : stale) {
+			this.expectsRemoveContent(PROVIDER, url);
+		}
+
+		prepare();
+
+		long baseline = usedHeap();
+		resetPeakHeap();
+
+		start = System.currentTimeMillis();
+		providerUnderTest.init();
+		long init = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		providerUnderTest.doSynchronization();
+		long sync = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		providerUnderTest.doHousekeeping();
+		long housekeeping = System.currentTimeMillis() - start;
+
+		long peak = peakHeap();
+
+		providerUnderTest.destroy();
+		verify();
+
+		report("Init", init + " ms, " + perSecond(triples, init) + " triples/s");
+		report("Synchronization", sync + " ms, " + expected.size() + " contents, " + perSecond(expected.size(), sync) + " contents/s");
+		report("Housekeeping", housekeeping + " ms, " + existing.size() + " contents checked, " + stale.size() + " removed");
+		report("Heap", "baseline " + baseline / (1024 * 1024) + " MB incl. expectations, peak " + peak / (1024 * 1024) + " MB");
+	}
+
+	private static List<Content> expectedContents(File file, Lang lang, Properties initParams) {
+		Model model = ModelFactory.createDefaultModel();
+		RDFDataMgr.read(model, file.toURI().toString(), lang);
+
+		ContentBuilder builder = new ContentBuilder(PROVIDER, CONTENT_TYPE, MappingPlan.load(initParams.getProperty("mappingFile")));
+		List<Content> contents = new ArrayList<Content>();
+		ResIterator iter = model.listResourcesWithProperty(null);
+
+		while (iter.hasNext()) {
+			Resource res = iter.nextResource();
+			Content c = builder.build(res, res.listProperties());
+
+			if (c != null) {
+				contents.add(c);
+			}
+		}
+
+		model.close();
+
+		return contents;
+	}
+
+	private static long perSecond(long count, long millis) {
+		return millis > 0 ? count * 1000 / millis : count;
+	}
+
+	private static long usedHeap() {
+		System.gc();
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	private static void resetPeakHeap() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	// Sum of the peaks of the heap pools, an upper bound of the peak of the whole heap
+	private static long peakHeap() {
+		long peak = 0;
+
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+
+		return peak;
+	}
+
+	private static void report(String phase, String result) {
+		System.out.println(String.format("%-16s %s", phase + ":", result));
+	}
+}